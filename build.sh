@@ -3,12 +3,29 @@
 set -e
 
 BUKKIT=bukkit-1.6.2-R1.0.jar
+CRAFTBUKKIT=craftbukkit-1.6.2-R1.0.jar
 BUILD=build
 
 if [ ! -d $BUILD ]; then
     mkdir $BUILD
 fi
 
+# ./build.sh loadtest [options]: build and run the load test harness.
+if [ "$1" = "loadtest" ]; then
+    shift
+    if [ ! -d $BUILD/loadtest ]; then
+        mkdir $BUILD/loadtest
+    fi
+
+    echo "Compiling load test..."
+    javac -cp $CRAFTBUKKIT -d $BUILD/loadtest $(find src loadtest -name '*.java')
+
+    echo "Running load test..."
+    java -cp $CRAFTBUKKIT:$BUILD/loadtest \
+      net.glouser.jumpgameplugin.loadtest.LoadTest "$@"
+    exit
+fi
+
 echo "Compiling..."
 javac -cp $BUKKIT -sourcepath src -d $BUILD -Xlint \
   src/net/glouser/jumpgameplugin/JumpGamePlugin.java
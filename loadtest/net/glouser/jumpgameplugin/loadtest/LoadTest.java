@@ -0,0 +1,627 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin.loadtest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import net.glouser.jumpgameplugin.JumpGamePlugin;
+import net.glouser.jumpgameplugin.QuantileSketch;
+import net.glouser.jumpgameplugin.event.JumpEliminationEvent;
+import net.glouser.jumpgameplugin.event.JumpGameStartEvent;
+import net.glouser.jumpgameplugin.event.JumpMissEvent;
+import net.glouser.jumpgameplugin.event.JumpSplashdownEvent;
+import net.glouser.jumpgameplugin.event.JumpTurnStartEvent;
+import net.glouser.jumpgameplugin.event.JumpWinEvent;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLoader;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/* Load test: runs JumpGamePlugin on a StubServer with a crowd of
+ * SyntheticPlayers and reports, as JSON, how much time and memory the
+ * plugin used per tick and how the games went.
+ *
+ * Ticks are simulated as fast as they can run (or at 20 per second
+ * with --realtime). Only the plugin's own work is timed: event
+ * handlers and scheduled tasks, including the stub calls they make.
+ * The first --warmup ticks are left out of the numbers so the JIT has
+ * settled.
+ *
+ * See the README for how to run it and what the options are.
+ */
+public class LoadTest {
+
+    private static long NANOS_PER_TICK = 50000000L;
+    private static int TICKS_PER_HOUR = 20 * 60 * 60;
+    private static int GROUND_Y = 64;
+    private static int POOL_Y = 64;
+    private static int PLATFORM_HEIGHT = 26;
+    private static int LOBBY_TICKS = 600;
+
+    // Options
+    private int numPlayers = 200;
+    private int movesPerSecond = 20000;
+    private int ticks = 12000;
+    private int warmup = 600;
+    private long seed = 1;
+    private double hitRate = 0.75;
+    private double quitsPerHour = 2;
+    private double strayClicksPerMinute = 1;
+    private double stallChance = 0.02;
+    private int poolSize = 10;
+    private int heatSize = 1;
+    private boolean autoRestart = false;
+    private boolean realtime = false;
+    private boolean verbose = false;
+    private File resources = new File(".");
+    private File out = null;
+
+    private StubServer stub;
+    private JavaPlugin plugin;
+    private ArrayList<SyntheticPlayer> players;
+    private Random rnd;
+    private Location waitLocation;
+    private Location jumpLocation;
+    private Location poolCenter;
+    private Block joinButton;
+    private Block startButton;
+
+    // Game progress, as seen through the plugin's events.
+    private boolean gameRunning;
+    private int gameNumber;
+    private int joinPresses;
+    private long lastGameEndTick;
+    private long lastActivityTick;
+    private long nextStartTick;
+
+    // Measurements
+    private ThreadMXBean threads;
+    private boolean allocSupported;
+    private long tickNanos;
+    private long tickBytes;
+    private QuantileSketch tickMicros;
+    private long maxTickNanos;
+    private long overruns;
+    private long measuredNanos;
+    private long measuredBytes;
+    private LinkedHashMap<String, Long> counts;
+    private long warnings;
+
+    public static void main(String[] args) throws Exception {
+        LoadTest t = new LoadTest();
+        for (String a : args) {
+            if (!t.option(a)) {
+                System.err.println("Unknown option: " + a);
+                System.exit(2);
+            }
+        }
+        t.run();
+    }
+
+    private boolean option(String a) {
+        int eq = a.indexOf('=');
+        String k = (eq < 0) ? a : a.substring(0, eq);
+        String v = (eq < 0) ? "true" : a.substring(eq + 1);
+        if (k.equals("--players")) { numPlayers = Integer.parseInt(v); }
+        else if (k.equals("--moves-per-second")) { movesPerSecond = Integer.parseInt(v); }
+        else if (k.equals("--ticks")) { ticks = Integer.parseInt(v); }
+        else if (k.equals("--warmup")) { warmup = Integer.parseInt(v); }
+        else if (k.equals("--seed")) { seed = Long.parseLong(v); }
+        else if (k.equals("--hit-rate")) { hitRate = Double.parseDouble(v); }
+        else if (k.equals("--quits-per-hour")) { quitsPerHour = Double.parseDouble(v); }
+        else if (k.equals("--stray-clicks-per-minute")) { strayClicksPerMinute = Double.parseDouble(v); }
+        else if (k.equals("--stall-chance")) { stallChance = Double.parseDouble(v); }
+        else if (k.equals("--pool-size")) { poolSize = Integer.parseInt(v); }
+        else if (k.equals("--heat-size")) { heatSize = Integer.parseInt(v); }
+        else if (k.equals("--auto-restart")) { autoRestart = Boolean.parseBoolean(v); }
+        else if (k.equals("--realtime")) { realtime = Boolean.parseBoolean(v); }
+        else if (k.equals("--verbose")) { verbose = Boolean.parseBoolean(v); }
+        else if (k.equals("--resources")) { resources = new File(v); }
+        else if (k.equals("--out")) { out = new File(v); }
+        else { return false; }
+        return true;
+    }
+
+    /* ************************************************************ */
+
+    private void run() throws Exception {
+        rnd = new Random(seed);
+        counts = new LinkedHashMap<String, Long>();
+        tickMicros = new QuantileSketch();
+        threads = ManagementFactory.getThreadMXBean();
+        allocSupported = threads instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported();
+
+        stub = new StubServer(createLogger(), GROUND_Y);
+        buildArena();
+        File dataFolder = createDataFolder();
+        writeConfig(new File(dataFolder, "config.yml"));
+
+        plugin = new JumpGamePlugin();
+        stub.setPlugin(plugin);
+        InputStream desc = new FileInputStream(new File(resources, "plugin.yml"));
+        try {
+            ClassLoader cl = new URLClassLoader(new URL[] { resources.toURI().toURL() },
+                                                LoadTest.class.getClassLoader());
+            Method init = JavaPlugin.class.getDeclaredMethod("initialize",
+                PluginLoader.class, Server.class, PluginDescriptionFile.class,
+                File.class, File.class, ClassLoader.class);
+            init.setAccessible(true);
+            init.invoke(plugin, stub.getPluginLoader(), stub.getServer(),
+                new PluginDescriptionFile(desc), dataFolder,
+                new File(resources, "JumpGame.jar"), cl);
+        } finally {
+            desc.close();
+        }
+        setEnabled(true);
+        stub.registerEvents(new Outcomes(), plugin);
+
+        players = new ArrayList<SyntheticPlayer>();
+        for (int i = 0; i < numPlayers; i++) {
+            SyntheticPlayer sp = new SyntheticPlayer(this, "Player" + i, seed * 7919 + i);
+            players.add(sp);
+            join(sp);
+        }
+
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            long tickStart = System.nanoTime();
+            tickNanos = 0;
+            tickBytes = 0;
+
+            long a0 = allocated();
+            long t0 = System.nanoTime();
+            stub.tick();
+            tickNanos += System.nanoTime() - t0;
+            tickBytes += allocated() - a0;
+
+            driveLobby();
+            for (SyntheticPlayer sp : players) {
+                sp.tick();
+            }
+
+            if (i >= warmup) {
+                tickMicros.add(tickNanos / 1000);
+                maxTickNanos = Math.max(maxTickNanos, tickNanos);
+                measuredNanos += tickNanos;
+                measuredBytes += tickBytes;
+                if (tickNanos > NANOS_PER_TICK) {
+                    overruns += 1;
+                }
+            }
+            if (realtime) {
+                long left = NANOS_PER_TICK - (System.nanoTime() - tickStart);
+                if (left > 0) {
+                    Thread.sleep(left / 1000000, (int) (left % 1000000));
+                }
+            }
+        }
+        long wallNanos = System.nanoTime() - wallStart;
+
+        setEnabled(false);
+        report(wallNanos);
+    }
+
+    private void setEnabled(boolean enabled) throws Exception {
+        Method m = JavaPlugin.class.getDeclaredMethod("setEnabled", boolean.class);
+        m.setAccessible(true);
+        m.invoke(plugin, enabled);
+    }
+
+    /* Press the start button once enough players have pressed join:
+     * nearly everyone, or at least two after a while in the lobby.
+     */
+    private void driveLobby() {
+        long now = getTick();
+        if (gameRunning) {
+            // Games that end without a winner (everyone quit, say)
+            // don't send an event; give up on them eventually.
+            if (now - lastActivityTick > 2 * getStallTicks() + 200) {
+                gameRunning = false;
+                gameOver("gamesAbandoned");
+            }
+            return;
+        }
+        if (now < nextStartTick || joinPresses < 2) {
+            return;
+        }
+        int online = 0;
+        for (SyntheticPlayer sp : players) {
+            if (sp.isOnline()) {
+                online += 1;
+            }
+        }
+        if (joinPresses >= online * 9 / 10 || now - lastGameEndTick >= LOBBY_TICKS) {
+            for (SyntheticPlayer sp : players) {
+                if (sp.isOnline() && !sp.isDead()) {
+                    interact(sp, startButton, Action.RIGHT_CLICK_BLOCK);
+                    count("startPresses");
+                    // Give the countdown time before trying again.
+                    nextStartTick = now + LOBBY_TICKS;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void gameOver(String what) {
+        count(what);
+        gameNumber += 1;
+        joinPresses = 0;
+        lastGameEndTick = getTick();
+        nextStartTick = getTick() + 100;
+    }
+
+    /* ************************************************************ */
+    /* Called by SyntheticPlayer */
+
+    public long getTick() { return stub.getCurrentTick(); }
+    public int getGameNumber() { return gameNumber; }
+    public boolean isGameRunning() { return gameRunning; }
+    public int getPoolY() { return POOL_Y; }
+    public double getPlatformY() { return jumpLocation.getY(); }
+    public Location getWaitLocation() { return waitLocation; }
+    public Location getPoolCenter() { return poolCenter; }
+    public double getHitRate() { return hitRate; }
+    public double getStallChance() { return stallChance; }
+    public long getStallTicks() { return 800; } // past the default jump and exit timeouts
+
+    public double getMovesPerPlayerTick() {
+        return (double) movesPerSecond / 20 / Math.max(1, numPlayers);
+    }
+
+    public double getQuitChance() {
+        return quitsPerHour / TICKS_PER_HOUR;
+    }
+
+    public double getStrayClickChance() {
+        return strayClicksPerMinute / (20 * 60);
+    }
+
+    public Material getBlockType(int x, int y, int z) {
+        return stub.getType(x, y, z);
+    }
+
+    public Location randomPoolSpot(Random r) {
+        int half = poolSize / 2;
+        return new Location(stub.getWorld(),
+            r.nextInt(poolSize) - half + 0.5, POOL_Y, r.nextInt(poolSize) - half + 0.5);
+    }
+
+    /* Somewhere on the ground one to three blocks outside the pool. */
+    public Location randomMissSpot(Random r) {
+        int half = poolSize / 2;
+        double off = half + 1 + r.nextDouble() * 2;
+        double along = (r.nextDouble() - 0.5) * poolSize;
+        double sign = r.nextBoolean() ? 1 : -1;
+        if (r.nextBoolean()) {
+            return new Location(stub.getWorld(), sign * off, GROUND_Y + 1, along);
+        }
+        return new Location(stub.getWorld(), along, GROUND_Y + 1, sign * off);
+    }
+
+    public void countMessage() { count("messages"); }
+    public void countTeleport() { count("teleports"); }
+
+    public void join(SyntheticPlayer sp) {
+        Player p = stub.connect(sp);
+        sp.connected(p, waitLocation.clone());
+        count("joins");
+        dispatch(new PlayerJoinEvent(p, sp.getName() + " joined the game"));
+    }
+
+    public void quit(SyntheticPlayer sp) {
+        count("quits");
+        dispatch(new PlayerQuitEvent(sp.getPlayer(), sp.getName() + " left the game"));
+        stub.disconnect(sp);
+    }
+
+    public void move(SyntheticPlayer sp, Location from, Location to) {
+        count("moves");
+        dispatch(new PlayerMoveEvent(sp.getPlayer(), from, to));
+    }
+
+    public void die(SyntheticPlayer sp) {
+        count("deaths");
+        dispatch(new PlayerDeathEvent(sp.getPlayer(), new ArrayList<ItemStack>(), 0,
+                                      sp.getName() + " hit the ground too hard"));
+    }
+
+    public void respawn(SyntheticPlayer sp) {
+        count("respawns");
+        PlayerRespawnEvent e = new PlayerRespawnEvent(sp.getPlayer(), waitLocation.clone(), false);
+        dispatch(e);
+        sp.respawned(e.getRespawnLocation().clone());
+    }
+
+    public void pressJoin(SyntheticPlayer sp) {
+        joinPresses += 1;
+        interact(sp, joinButton, Action.RIGHT_CLICK_BLOCK);
+    }
+
+    /* Clicking on something that isn't a button. */
+    public void strayClick(SyntheticPlayer sp) {
+        Location l = sp.getLocation();
+        if (rnd.nextBoolean()) {
+            interact(sp, stub.getBlock(l.getBlockX(), l.getBlockY() - 1, l.getBlockZ()),
+                     Action.RIGHT_CLICK_BLOCK);
+        } else {
+            interact(sp, null, Action.LEFT_CLICK_AIR);
+        }
+    }
+
+    private void interact(SyntheticPlayer sp, Block b, Action a) {
+        count("interacts");
+        dispatch(new PlayerInteractEvent(sp.getPlayer(), a, null, b, BlockFace.UP));
+    }
+
+    /* ************************************************************ */
+
+    /* Seen through the same events other plugins get. */
+    public class Outcomes implements Listener {
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onStart(JumpGameStartEvent e) {
+            count("gamesStarted");
+            gameRunning = true;
+            lastActivityTick = getTick();
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onTurn(JumpTurnStartEvent e) {
+            count("turns");
+            lastActivityTick = getTick();
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onSplashdown(JumpSplashdownEvent e) {
+            count("splashdowns");
+            lastActivityTick = getTick();
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onMiss(JumpMissEvent e) {
+            count("misses");
+            lastActivityTick = getTick();
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onElimination(JumpEliminationEvent e) {
+            count("eliminations");
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onWin(JumpWinEvent e) {
+            gameRunning = false;
+            gameOver("gamesWon");
+        }
+    }
+
+    private void dispatch(Event e) {
+        long a0 = allocated();
+        long t0 = System.nanoTime();
+        stub.callEvent(e);
+        tickNanos += System.nanoTime() - t0;
+        tickBytes += allocated() - a0;
+    }
+
+    private long allocated() {
+        if (!allocSupported) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) threads)
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void count(String what) {
+        Long n = counts.get(what);
+        counts.put(what, (n == null) ? 1 : n + 1);
+    }
+
+    /* ************************************************************ */
+
+    /* A square pool with the jump platform high above its north edge,
+     * and a waiting area with the buttons off to the east.
+     */
+    private void buildArena() {
+        World w = stub.getWorld();
+        int half = poolSize / 2;
+        for (int x = -half; x < poolSize - half; x++) {
+            for (int z = -half; z < poolSize - half; z++) {
+                stub.setType(x, POOL_Y, z, Material.STATIONARY_WATER);
+            }
+        }
+        poolCenter = new Location(w, 0, POOL_Y, 0);
+        jumpLocation = new Location(w, 0.5, POOL_Y + PLATFORM_HEIGHT, -half - 1.5);
+        waitLocation = new Location(w, poolSize + 10.5, GROUND_Y + 1, 0.5);
+        int bx = poolSize + 7;
+        stub.setType(bx, GROUND_Y + 1, -2, Material.STONE_BUTTON);
+        stub.setType(bx, GROUND_Y + 1, 0, Material.STONE_BUTTON);
+        stub.setType(bx, GROUND_Y + 1, 2, Material.STONE_BUTTON);
+        joinButton = stub.getBlock(bx, GROUND_Y + 1, -2);
+        startButton = stub.getBlock(bx, GROUND_Y + 1, 0);
+    }
+
+    private void writeConfig(File f) throws IOException {
+        StringBuilder xz = new StringBuilder();
+        int half = poolSize / 2;
+        for (int x = -half; x < poolSize - half; x++) {
+            for (int z = -half; z < poolSize - half; z++) {
+                if (xz.length() > 0) {
+                    xz.append(',');
+                }
+                xz.append(x).append(',').append(z);
+            }
+        }
+        int bx = poolSize + 7;
+        PrintWriter w = new PrintWriter(new FileWriter(f));
+        try {
+            w.println("world: world");
+            w.println("poolY: " + POOL_Y);
+            w.println("poolXZ: '" + xz + "'");
+            w.println("jumpLocation: " + yaml(jumpLocation));
+            w.println("waitLocation: " + yaml(waitLocation));
+            w.println("respawnLocation: " + yaml(waitLocation));
+            w.println("joinButton: {x: " + bx + ", y: " + (GROUND_Y + 1) + ", z: -2}");
+            w.println("startButton: {x: " + bx + ", y: " + (GROUND_Y + 1) + ", z: 0}");
+            w.println("resetButton: {x: " + bx + ", y: " + (GROUND_Y + 1) + ", z: 2}");
+            w.println("heatSize: " + heatSize);
+            w.println("autoRestart: " + autoRestart);
+            w.println("poolSizeLimit: " + (poolSize * poolSize));
+            w.println("scoreboard: false");
+            w.println("httpPort: 0");
+            w.println("statsExportMinutes: 0");
+        } finally {
+            w.close();
+        }
+    }
+
+    private static String yaml(Location l) {
+        return "{x: " + l.getX() + ", y: " + l.getY() + ", z: " + l.getZ()
+            + ", yaw: " + l.getYaw() + ", pitch: " + l.getPitch() + "}";
+    }
+
+    private static File createDataFolder() throws IOException {
+        File dir = File.createTempFile("jumpgame-loadtest", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Could not create " + dir);
+        }
+        return dir;
+    }
+
+    private Logger createLogger() {
+        Logger logger = Logger.getLogger("JumpGame-loadtest");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.ALL);
+        logger.addHandler(new Handler() {
+            public void publish(LogRecord r) {
+                if (r.getLevel().intValue() >= Level.WARNING.intValue()) {
+                    warnings += 1;
+                }
+            }
+            public void flush() {}
+            public void close() {}
+        });
+        if (verbose) {
+            ConsoleHandler h = new ConsoleHandler();
+            h.setLevel(Level.ALL);
+            logger.addHandler(h);
+        }
+        return logger;
+    }
+
+    /* ************************************************************ */
+
+    private void report(long wallNanos) throws IOException {
+        int measured = Math.max(0, ticks - warmup);
+        double seconds = measured / 20.0;
+        StringBuilder s = new StringBuilder();
+        s.append("{\n");
+        s.append("  \"options\": {");
+        s.append("\"players\": ").append(numPlayers);
+        s.append(", \"movesPerSecond\": ").append(movesPerSecond);
+        s.append(", \"ticks\": ").append(ticks);
+        s.append(", \"warmup\": ").append(warmup);
+        s.append(", \"seed\": ").append(seed);
+        s.append(", \"hitRate\": ").append(hitRate);
+        s.append(", \"quitsPerHour\": ").append(quitsPerHour);
+        s.append(", \"stallChance\": ").append(stallChance);
+        s.append(", \"poolSize\": ").append(poolSize);
+        s.append(", \"heatSize\": ").append(heatSize);
+        s.append(", \"autoRestart\": ").append(autoRestart);
+        s.append(", \"realtime\": ").append(realtime);
+        s.append("},\n");
+        s.append("  \"measuredTicks\": ").append(measured).append(",\n");
+        s.append("  \"wallSeconds\": ").append(String.format("%.3f", wallNanos / 1e9)).append(",\n");
+        s.append("  \"pluginTickMicros\": {");
+        s.append("\"mean\": ").append(measured == 0 ? 0 : measuredNanos / 1000 / measured);
+        s.append(", \"p50\": ").append(tickMicros.quantile(0.5));
+        s.append(", \"p90\": ").append(tickMicros.quantile(0.9));
+        s.append(", \"p99\": ").append(tickMicros.quantile(0.99));
+        s.append(", \"max\": ").append(maxTickNanos / 1000);
+        s.append(", \"over50ms\": ").append(overruns);
+        s.append("},\n");
+        s.append("  \"allocation\": ");
+        if (allocSupported) {
+            s.append("{\"bytesPerTick\": ").append(measured == 0 ? 0 : measuredBytes / measured);
+            s.append(", \"bytesPerSecond\": ").append(seconds == 0 ? 0 : (long) (measuredBytes / seconds));
+            s.append(", \"total\": ").append(measuredBytes).append("},\n");
+        } else {
+            s.append("null,\n");
+        }
+        s.append("  \"counts\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            s.append(first ? "" : ", ").append('"').append(e.getKey()).append("\": ").append(e.getValue());
+            first = false;
+        }
+        s.append("},\n");
+        s.append("  \"broadcasts\": ").append(stub.getBroadcasts()).append(",\n");
+        s.append("  \"errors\": ").append(stub.getErrors()).append(",\n");
+        s.append("  \"warnings\": ").append(warnings).append("\n");
+        s.append("}\n");
+
+        if (out == null) {
+            System.out.print(s);
+        } else {
+            PrintWriter w = new PrintWriter(new FileWriter(out));
+            try {
+                w.print(s);
+            } finally {
+                w.close();
+            }
+        }
+    }
+
+}
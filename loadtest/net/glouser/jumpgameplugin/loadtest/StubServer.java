@@ -0,0 +1,647 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin.loadtest;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginLoader;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+/* Just enough of a Bukkit server to run the plugin in-process: one
+ * world kept in a hash map, a scheduler that runs when tick() is
+ * called, and a plugin manager that registers listeners in the events'
+ * HandlerLists and calls them the way Bukkit does.
+ *
+ * The Bukkit interfaces are big, so the stubs are dynamic proxies.
+ * Methods the plugin doesn't use answer null, zero, false or an empty
+ * collection.
+ */
+public class StubServer {
+
+    private static String WORLD_NAME = "world";
+
+    private class ScheduledTask {
+        int id;
+        Runnable r;
+        long next;
+        long period;
+        boolean cancelled;
+    }
+
+    private Logger logger;
+    private Thread mainThread;
+    private Server server;
+    private World world;
+    private BukkitScheduler scheduler;
+    private PluginManager pluginManager;
+    private PluginLoader pluginLoader;
+    private Plugin plugin;
+    private int groundY;
+    private HashMap<Long, Integer> types;
+    private HashMap<Long, Block> blocks;
+    private HashMap<Long, Chunk> chunks;
+    private ArrayList<SyntheticPlayer> online;
+    private ArrayList<ScheduledTask> tasks;
+    private int nextTaskId;
+    private long currentTick;
+    private long errors;
+    private long broadcasts;
+
+    public StubServer(Logger logger, int groundY) {
+        this.logger = logger;
+        this.groundY = groundY;
+        mainThread = Thread.currentThread();
+        types = new HashMap<Long, Integer>();
+        blocks = new HashMap<Long, Block>();
+        chunks = new HashMap<Long, Chunk>();
+        online = new ArrayList<SyntheticPlayer>();
+        tasks = new ArrayList<ScheduledTask>();
+        server = proxy(Server.class, new ServerHandler());
+        world = proxy(World.class, new WorldHandler());
+        scheduler = proxy(BukkitScheduler.class, new SchedulerHandler());
+        pluginManager = proxy(PluginManager.class, new PluginManagerHandler());
+        pluginLoader = proxy(PluginLoader.class, new Answers());
+    }
+
+    public Server getServer() { return server; }
+    public World getWorld() { return world; }
+    public PluginLoader getPluginLoader() { return pluginLoader; }
+    public long getCurrentTick() { return currentTick; }
+    public long getErrors() { return errors; }
+    public long getBroadcasts() { return broadcasts; }
+
+    public void setPlugin(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /* Blocks at or below groundY are stone and the rest is air, unless
+     * set otherwise.
+     */
+    public void setType(int x, int y, int z, Material m) {
+        types.put(key(x, y, z), m.getId() << 4);
+    }
+
+    public Material getType(int x, int y, int z) {
+        return Material.getMaterial(typeAndData(x, y, z) >> 4);
+    }
+
+    public Block getBlock(int x, int y, int z) {
+        long k = key(x, y, z);
+        Block b = blocks.get(k);
+        if (b == null) {
+            b = proxy(Block.class, new BlockHandler(x, y, z));
+            blocks.put(k, b);
+        }
+        return b;
+    }
+
+    public Player connect(SyntheticPlayer sp) {
+        online.add(sp);
+        return proxy(Player.class, new PlayerHandler(sp));
+    }
+
+    public void disconnect(SyntheticPlayer sp) {
+        online.remove(sp);
+    }
+
+    /* Run an event through everything registered for it. Exceptions
+     * thrown by a listener are logged and counted, as on a real server.
+     */
+    public void callEvent(Event e) {
+        for (RegisteredListener rl : e.getHandlers().getRegisteredListeners()) {
+            try {
+                rl.callEvent(e);
+            } catch (EventException ex) {
+                errors += 1;
+                logger.log(Level.SEVERE, "Could not pass " + e.getEventName(), ex.getCause());
+            } catch (RuntimeException ex) {
+                errors += 1;
+                logger.log(Level.SEVERE, "Could not pass " + e.getEventName(), ex);
+            }
+        }
+    }
+
+    public void registerEvents(final Listener listener, Plugin owner) {
+        for (final Method m : listener.getClass().getMethods()) {
+            EventHandler h = m.getAnnotation(EventHandler.class);
+            if (h == null || m.getParameterTypes().length != 1
+                  || !Event.class.isAssignableFrom(m.getParameterTypes()[0])) {
+                continue;
+            }
+            final Class<? extends Event> type = m.getParameterTypes()[0].asSubclass(Event.class);
+            EventExecutor ex = new EventExecutor() {
+                public void execute(Listener l, Event e) throws EventException {
+                    if (!type.isInstance(e)) {
+                        return;
+                    }
+                    try {
+                        m.invoke(l, e);
+                    } catch (InvocationTargetException x) {
+                        throw new EventException(x.getCause());
+                    } catch (IllegalAccessException x) {
+                        throw new EventException(x);
+                    }
+                }
+            };
+            getHandlerList(type).register(
+                new RegisteredListener(listener, ex, h.priority(), owner, h.ignoreCancelled()));
+        }
+    }
+
+    /* Advance one tick, running the scheduled tasks that are due.
+     */
+    public void tick() {
+        currentTick += 1;
+        // Tasks scheduled while these run wait for a later tick.
+        ArrayList<ScheduledTask> due = new ArrayList<ScheduledTask>();
+        for (ScheduledTask t : tasks) {
+            if (t.next <= currentTick) {
+                due.add(t);
+            }
+        }
+        for (ScheduledTask t : due) {
+            if (t.cancelled) {
+                continue;
+            }
+            try {
+                t.r.run();
+            } catch (RuntimeException ex) {
+                errors += 1;
+                logger.log(Level.SEVERE, "Task " + t.id + " threw an exception", ex);
+            }
+            if (t.period > 0) {
+                t.next = currentTick + t.period;
+            } else {
+                t.cancelled = true;
+            }
+        }
+        Iterator<ScheduledTask> it = tasks.iterator();
+        while (it.hasNext()) {
+            if (it.next().cancelled) {
+                it.remove();
+            }
+        }
+    }
+
+    private int typeAndData(int x, int y, int z) {
+        Integer t = types.get(key(x, y, z));
+        if (t != null) {
+            return t;
+        }
+        return (y <= groundY) ? Material.STONE.getId() << 4 : 0;
+    }
+
+    private Chunk getChunk(int cx, int cz) {
+        long k = key(cx, 0, cz);
+        Chunk c = chunks.get(k);
+        if (c == null) {
+            c = proxy(Chunk.class, new ChunkHandler(cx, cz));
+            chunks.put(k, c);
+        }
+        return c;
+    }
+
+    private BukkitTask schedule(Runnable r, long delay, long period) {
+        final ScheduledTask t = new ScheduledTask();
+        t.id = ++nextTaskId;
+        t.r = r;
+        t.next = currentTick + Math.max(1, delay);
+        t.period = period;
+        tasks.add(t);
+        return proxy(BukkitTask.class, new Answers() {
+            Object answer(String name, Object[] args) {
+                if (name.equals("cancel")) {
+                    t.cancelled = true;
+                    return null;
+                } else if (name.equals("getTaskId")) {
+                    return t.id;
+                } else if (name.equals("isSync")) {
+                    return true;
+                } else if (name.equals("getOwner")) {
+                    return plugin;
+                }
+                return NONE;
+            }
+        });
+    }
+
+    private Player[] getOnlinePlayers() {
+        Player[] ps = new Player[online.size()];
+        for (int i = 0; i < ps.length; i++) {
+            ps[i] = online.get(i).getPlayer();
+        }
+        return ps;
+    }
+
+    private Player findPlayer(String name, boolean exact) {
+        Player found = null;
+        for (SyntheticPlayer sp : online) {
+            String n = sp.getName();
+            if (n.equalsIgnoreCase(name)) {
+                return sp.getPlayer();
+            } else if (!exact && n.toLowerCase().startsWith(name.toLowerCase())
+                  && (found == null || n.length() < found.getName().length())) {
+                found = sp.getPlayer();
+            }
+        }
+        return found;
+    }
+
+    private static HandlerList getHandlerList(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                Method m = c.getDeclaredMethod("getHandlerList");
+                m.setAccessible(true);
+                return (HandlerList) m.invoke(null);
+            } catch (NoSuchMethodException e) {
+                // Try the superclass.
+            } catch (Exception e) {
+                throw new IllegalArgumentException("No handler list for " + type.getName(), e);
+            }
+        }
+        throw new IllegalArgumentException("No handler list for " + type.getName());
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) (x & 0x3ffffff) << 38) | ((long) (z & 0x3ffffff) << 12) | (y & 0xfff);
+    }
+
+    private static <T> T proxy(Class<T> iface, InvocationHandler h) {
+        return iface.cast(Proxy.newProxyInstance(
+            StubServer.class.getClassLoader(), new Class<?>[] { iface }, h));
+    }
+
+    /* ************************************************************ */
+
+    /* Object methods by identity, then answer(), and anything answer()
+     * doesn't know gets a zero value for its return type.
+     */
+    private static class Answers implements InvocationHandler {
+        static Object NONE = new Object();
+
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            String name = m.getName();
+            if (m.getDeclaringClass() == Object.class) {
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return describe();
+            }
+            Object o = answer(name, (args == null) ? new Object[0] : args);
+            return (o == NONE) ? zero(m.getReturnType()) : o;
+        }
+
+        Object answer(String name, Object[] args) {
+            return NONE;
+        }
+
+        String describe() {
+            return getClass().getSimpleName();
+        }
+
+        static Object zero(Class<?> t) {
+            if (t == boolean.class) { return false; }
+            if (t == int.class) { return 0; }
+            if (t == long.class) { return 0L; }
+            if (t == double.class) { return 0.0; }
+            if (t == float.class) { return 0.0f; }
+            if (t == short.class) { return (short) 0; }
+            if (t == byte.class) { return (byte) 0; }
+            if (t == char.class) { return (char) 0; }
+            if (t.isArray()) { return Array.newInstance(t.getComponentType(), 0); }
+            if (t == List.class || t == Collection.class) { return new ArrayList<Object>(); }
+            if (t == Set.class) { return new HashSet<Object>(); }
+            if (t == Map.class) { return new HashMap<Object, Object>(); }
+            return null;
+        }
+    }
+
+    private class ServerHandler extends Answers {
+        Object answer(String name, Object[] args) {
+            if (name.equals("getName")) {
+                return "StubServer";
+            } else if (name.equals("getVersion") || name.equals("getBukkitVersion")) {
+                return "1.6.2-R0.1-loadtest";
+            } else if (name.equals("getLogger")) {
+                return logger;
+            } else if (name.equals("isPrimaryThread")) {
+                return Thread.currentThread() == mainThread;
+            } else if (name.equals("getScheduler")) {
+                return scheduler;
+            } else if (name.equals("getPluginManager")) {
+                return pluginManager;
+            } else if (name.equals("getWorld")) {
+                return WORLD_NAME.equals(args[0]) || world.getUID().equals(args[0]) ? world : null;
+            } else if (name.equals("getWorlds")) {
+                List<World> ws = new ArrayList<World>();
+                ws.add(world);
+                return ws;
+            } else if (name.equals("getOnlinePlayers")) {
+                return getOnlinePlayers();
+            } else if (name.equals("getPlayer") && args[0] instanceof String) {
+                return findPlayer((String) args[0], false);
+            } else if (name.equals("getPlayerExact")) {
+                return findPlayer((String) args[0], true);
+            } else if (name.equals("broadcastMessage")) {
+                broadcasts += 1;
+                for (SyntheticPlayer sp : online) {
+                    sp.getPlayer().sendMessage((String) args[0]);
+                }
+                return online.size();
+            }
+            return NONE;
+        }
+    }
+
+    private class WorldHandler extends Answers {
+        private UUID uid = UUID.randomUUID();
+
+        Object answer(String name, Object[] args) {
+            if (name.equals("getName")) {
+                return WORLD_NAME;
+            } else if (name.equals("getUID")) {
+                return uid;
+            } else if (name.equals("getBlockAt")) {
+                if (args[0] instanceof Location) {
+                    Location l = (Location) args[0];
+                    return getBlock(l.getBlockX(), l.getBlockY(), l.getBlockZ());
+                }
+                return getBlock((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+            } else if (name.equals("getBlockTypeIdAt")) {
+                if (args[0] instanceof Location) {
+                    Location l = (Location) args[0];
+                    return typeAndData(l.getBlockX(), l.getBlockY(), l.getBlockZ()) >> 4;
+                }
+                return typeAndData((Integer) args[0], (Integer) args[1], (Integer) args[2]) >> 4;
+            } else if (name.equals("getChunkAt")) {
+                if (args[0] instanceof Location) {
+                    Location l = (Location) args[0];
+                    return getChunk(l.getBlockX() >> 4, l.getBlockZ() >> 4);
+                } else if (args[0] instanceof Block) {
+                    Block b = (Block) args[0];
+                    return getChunk(b.getX() >> 4, b.getZ() >> 4);
+                }
+                return getChunk((Integer) args[0], (Integer) args[1]);
+            } else if (name.equals("isChunkLoaded") || name.equals("loadChunk")
+                  || name.equals("unloadChunkRequest")) {
+                return true;
+            } else if (name.equals("getPlayers")) {
+                return new ArrayList<Player>(java.util.Arrays.asList(getOnlinePlayers()));
+            } else if (name.equals("getSpawnLocation")) {
+                return new Location(world, 0, groundY + 1, 0);
+            } else if (name.equals("getMaxHeight")) {
+                return 256;
+            }
+            return NONE;
+        }
+
+        String describe() {
+            return "StubWorld{" + WORLD_NAME + "}";
+        }
+    }
+
+    private class ChunkHandler extends Answers {
+        private int cx;
+        private int cz;
+
+        ChunkHandler(int cx, int cz) {
+            this.cx = cx;
+            this.cz = cz;
+        }
+
+        Object answer(String name, Object[] args) {
+            if (name.equals("getX")) {
+                return cx;
+            } else if (name.equals("getZ")) {
+                return cz;
+            } else if (name.equals("getWorld")) {
+                return world;
+            } else if (name.equals("isLoaded") || name.equals("load")) {
+                return true;
+            } else if (name.equals("getBlock")) {
+                return getBlock((cx << 4) + (Integer) args[0], (Integer) args[1],
+                                (cz << 4) + (Integer) args[2]);
+            }
+            return NONE;
+        }
+    }
+
+    private class BlockHandler extends Answers {
+        private int x;
+        private int y;
+        private int z;
+
+        BlockHandler(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        Object answer(String name, Object[] args) {
+            if (name.equals("getX")) {
+                return x;
+            } else if (name.equals("getY")) {
+                return y;
+            } else if (name.equals("getZ")) {
+                return z;
+            } else if (name.equals("getWorld")) {
+                return world;
+            } else if (name.equals("getChunk")) {
+                return getChunk(x >> 4, z >> 4);
+            } else if (name.equals("getLocation") && args.length == 0) {
+                return new Location(world, x, y, z);
+            } else if (name.equals("getType")) {
+                return Material.getMaterial(typeAndData(x, y, z) >> 4);
+            } else if (name.equals("getTypeId")) {
+                return typeAndData(x, y, z) >> 4;
+            } else if (name.equals("getData")) {
+                return (byte) (typeAndData(x, y, z) & 0xf);
+            } else if (name.equals("isEmpty")) {
+                return typeAndData(x, y, z) >> 4 == 0;
+            } else if (name.equals("isLiquid")) {
+                Material m = Material.getMaterial(typeAndData(x, y, z) >> 4);
+                return m == Material.WATER || m == Material.STATIONARY_WATER
+                    || m == Material.LAVA || m == Material.STATIONARY_LAVA;
+            } else if (name.equals("setType")) {
+                types.put(key(x, y, z), ((Material) args[0]).getId() << 4);
+                return null;
+            } else if (name.equals("setTypeId")) {
+                types.put(key(x, y, z), (Integer) args[0] << 4);
+                return true;
+            } else if (name.equals("setTypeIdAndData")) {
+                types.put(key(x, y, z), ((Integer) args[0] << 4) | ((Byte) args[1] & 0xf));
+                return true;
+            } else if (name.equals("setData")) {
+                int t = typeAndData(x, y, z);
+                types.put(key(x, y, z), (t & ~0xf) | ((Byte) args[0] & 0xf));
+                return null;
+            } else if (name.equals("getRelative")) {
+                if (args[0] instanceof BlockFace) {
+                    BlockFace f = (BlockFace) args[0];
+                    int n = (args.length > 1) ? (Integer) args[1] : 1;
+                    return getBlock(x + f.getModX() * n, y + f.getModY() * n, z + f.getModZ() * n);
+                }
+                return getBlock(x + (Integer) args[0], y + (Integer) args[1], z + (Integer) args[2]);
+            }
+            return NONE;
+        }
+
+        String describe() {
+            return "StubBlock{" + x + "," + y + "," + z + "}";
+        }
+    }
+
+    private class PlayerHandler extends Answers {
+        private SyntheticPlayer sp;
+
+        PlayerHandler(SyntheticPlayer sp) {
+            this.sp = sp;
+        }
+
+        Object answer(String name, Object[] args) {
+            if (name.equals("getName") || name.equals("getDisplayName")
+                  || name.equals("getPlayerListName")) {
+                return sp.getName();
+            } else if (name.equals("getUniqueId")) {
+                return sp.getUniqueId();
+            } else if (name.equals("getServer")) {
+                return server;
+            } else if (name.equals("getWorld")) {
+                return world;
+            } else if (name.equals("getLocation")) {
+                Location l = sp.getLocation();
+                if (args.length == 0) {
+                    return l.clone();
+                }
+                Location into = (Location) args[0];
+                if (into != null) {
+                    into.setWorld(l.getWorld());
+                    into.setX(l.getX());
+                    into.setY(l.getY());
+                    into.setZ(l.getZ());
+                    into.setYaw(l.getYaw());
+                    into.setPitch(l.getPitch());
+                }
+                return into;
+            } else if (name.equals("teleport")) {
+                if (args[0] instanceof Location) {
+                    sp.teleported(((Location) args[0]).clone());
+                    return true;
+                }
+                return false;
+            } else if (name.equals("isOnline") || name.equals("isValid")) {
+                return sp.isOnline();
+            } else if (name.equals("isDead")) {
+                return sp.isDead();
+            } else if (name.equals("sendMessage")) {
+                sp.messaged();
+                return null;
+            } else if (name.equals("hasPermission") || name.equals("isOp")) {
+                return true;
+            }
+            return NONE;
+        }
+
+        String describe() {
+            return "StubPlayer{" + sp.getName() + "}";
+        }
+    }
+
+    private class SchedulerHandler extends Answers {
+        Object answer(String name, Object[] args) {
+            if (name.equals("runTask") || name.equals("runTaskAsynchronously")) {
+                return schedule((Runnable) args[1], 0, 0);
+            } else if (name.equals("runTaskLater") || name.equals("runTaskLaterAsynchronously")) {
+                return schedule((Runnable) args[1], (Long) args[2], 0);
+            } else if (name.equals("runTaskTimer") || name.equals("runTaskTimerAsynchronously")) {
+                return schedule((Runnable) args[1], (Long) args[2], Math.max(1, (Long) args[3]));
+            } else if (name.equals("scheduleSyncDelayedTask")) {
+                long delay = (args.length > 2) ? (Long) args[2] : 0;
+                return schedule((Runnable) args[1], delay, 0).getTaskId();
+            } else if (name.equals("cancelTask")) {
+                for (ScheduledTask t : tasks) {
+                    if (t.id == (Integer) args[0]) {
+                        t.cancelled = true;
+                    }
+                }
+                return null;
+            } else if (name.equals("cancelTasks") || name.equals("cancelAllTasks")) {
+                for (ScheduledTask t : tasks) {
+                    t.cancelled = true;
+                }
+                return null;
+            }
+            return NONE;
+        }
+    }
+
+    private class PluginManagerHandler extends Answers {
+        Object answer(String name, Object[] args) {
+            if (name.equals("registerEvents")) {
+                registerEvents((Listener) args[0], (Plugin) args[1]);
+                return null;
+            } else if (name.equals("callEvent")) {
+                callEvent((Event) args[0]);
+                return null;
+            } else if (name.equals("getPlugin")) {
+                return (plugin != null && plugin.getName().equals(args[0])) ? plugin : null;
+            } else if (name.equals("getPlugins")) {
+                return (plugin == null) ? new Plugin[0] : new Plugin[] { plugin };
+            } else if (name.equals("isPluginEnabled")) {
+                return plugin != null && plugin.isEnabled();
+            }
+            return NONE;
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin.loadtest;
+
+import java.util.Random;
+import java.util.UUID;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+
+/* A made-up player. Each tick it does what a real one would in its
+ * situation:
+ *
+ * - in the waiting area: wander about, press the join button between
+ *   games, now and then click on something else
+ * - on a jump platform (which it notices by being teleported up
+ *   there): look around for a while, then jump at the pool, or
+ *   occasionally freeze until the timeout
+ * - falling: a ballistic arc that lands in the water or, on a miss,
+ *   on the ground, which kills it
+ * - in the pool: tread water for a bit, then swim to the edge and
+ *   climb out, or occasionally stay until forced out
+ * - dead: respawn after a moment
+ *
+ * Any player may also quit and come back later.
+ *
+ * Moves are sent as several events per tick, each a step along the
+ * way, to reach the event rate being tested.
+ */
+public class SyntheticPlayer {
+
+    private enum Mode {
+        OFFLINE,
+        IDLE,
+        ON_PLATFORM,
+        FALLING,
+        SWIMMING,
+        DEAD,
+    }
+
+    private static double GRAVITY = 0.08;
+    private static double DRAG = 0.98;
+    private static double JUMP_VELOCITY = 0.42;
+    private static double WALK_SPEED = 0.2;
+    private static double SWIM_SPEED = 0.15;
+
+    private LoadTest test;
+    private Random rnd;
+    private String name;
+    private UUID uid;
+    private Player player;
+    private Mode mode;
+    private Location loc;
+    private Location wanderTo;
+    private long nextActionTick;
+    private int joinedForGame;
+    private double moveCredit;
+
+    // Current fall.
+    private double vy;
+    private double dx;
+    private double dz;
+
+    public SyntheticPlayer(LoadTest test, String name, long seed) {
+        this.test = test;
+        this.name = name;
+        rnd = new Random(seed);
+        uid = new UUID(seed, name.hashCode());
+        mode = Mode.OFFLINE;
+        joinedForGame = -1;
+    }
+
+    public String getName() { return name; }
+    public UUID getUniqueId() { return uid; }
+    public Player getPlayer() { return player; }
+    public Location getLocation() { return loc; }
+    public boolean isOnline() { return mode != Mode.OFFLINE; }
+    public boolean isDead() { return mode == Mode.DEAD; }
+
+    public void messaged() {
+        test.countMessage();
+    }
+
+    /* Came in through StubServer. Which way it went tells us what the
+     * game wants this player to do.
+     */
+    public void teleported(Location to) {
+        loc = to;
+        test.countTeleport();
+        if (mode == Mode.OFFLINE || mode == Mode.DEAD) {
+            return;
+        }
+        if (to.getY() >= test.getPlatformY() - 1) {
+            mode = Mode.ON_PLATFORM;
+            nextActionTick = now() + hesitation();
+        } else {
+            mode = Mode.IDLE;
+            wanderTo = null;
+        }
+    }
+
+    public void connected(Player p, Location at) {
+        player = p;
+        loc = at;
+        mode = Mode.IDLE;
+        wanderTo = null;
+    }
+
+    public void tick() {
+        if (mode == Mode.OFFLINE) {
+            if (now() >= nextActionTick) {
+                test.join(this);
+            }
+            return;
+        }
+        if (rnd.nextDouble() < test.getQuitChance()) {
+            test.quit(this);
+            mode = Mode.OFFLINE;
+            nextActionTick = now() + 100 + rnd.nextInt(1100);
+            return;
+        }
+        moveCredit += test.getMovesPerPlayerTick();
+        int moves = (int) moveCredit;
+        moveCredit -= moves;
+
+        switch (mode) {
+            case IDLE:
+                idle(moves);
+                break;
+            case ON_PLATFORM:
+                if (now() >= nextActionTick) {
+                    startJump();
+                    fall(moves);
+                } else {
+                    lookAround(moves);
+                }
+                break;
+            case FALLING:
+                fall(moves);
+                break;
+            case SWIMMING:
+                swim(moves);
+                break;
+            case DEAD:
+                if (now() >= nextActionTick) {
+                    mode = Mode.IDLE;
+                    test.respawn(this);
+                }
+                break;
+        }
+    }
+
+    /* Set by LoadTest after a respawn event picks the location. */
+    public void respawned(Location at) {
+        loc = at;
+        if (at.getY() >= test.getPlatformY() - 1) {
+            mode = Mode.ON_PLATFORM;
+            nextActionTick = now() + hesitation();
+        } else {
+            mode = Mode.IDLE;
+            wanderTo = null;
+        }
+    }
+
+    private void idle(int moves) {
+        if (joinedForGame != test.getGameNumber() && !test.isGameRunning()
+              && now() >= nextActionTick) {
+            joinedForGame = test.getGameNumber();
+            test.pressJoin(this);
+        } else if (rnd.nextDouble() < test.getStrayClickChance()) {
+            test.strayClick(this);
+        }
+        if (wanderTo == null || loc.distanceSquared(wanderTo) < 0.25) {
+            Location w = test.getWaitLocation();
+            wanderTo = new Location(w.getWorld(),
+                w.getX() + rnd.nextGaussian() * 4, w.getY(), w.getZ() + rnd.nextGaussian() * 4);
+        }
+        double ddx = wanderTo.getX() - loc.getX();
+        double ddz = wanderTo.getZ() - loc.getZ();
+        double d = Math.max(1e-6, Math.sqrt(ddx * ddx + ddz * ddz));
+        double step = Math.min(d, WALK_SPEED);
+        float yaw = (float) Math.toDegrees(Math.atan2(-ddx, ddz));
+        walk(moves, ddx / d * step, 0, ddz / d * step, yaw);
+    }
+
+    private void lookAround(int moves) {
+        walk(moves, 0, 0, 0, loc.getYaw() + (float) rnd.nextGaussian() * 5);
+    }
+
+    private void startJump() {
+        // Aim for a pool block, or miss the pool.
+        double tx;
+        double tz;
+        if (rnd.nextDouble() < test.getHitRate()) {
+            Location target = test.randomPoolSpot(rnd);
+            tx = target.getX();
+            tz = target.getZ();
+        } else {
+            Location target = test.randomMissSpot(rnd);
+            tx = target.getX();
+            tz = target.getZ();
+        }
+        // Time the flight, then spread the horizontal distance over it.
+        int ticks = 0;
+        double y = loc.getY();
+        double v = JUMP_VELOCITY;
+        while (y > test.getPoolY() + 0.5 && ticks < 200) {
+            y += v;
+            v = (v - GRAVITY) * DRAG;
+            ticks += 1;
+        }
+        vy = JUMP_VELOCITY;
+        dx = (tx - loc.getX()) / Math.max(1, ticks);
+        dz = (tz - loc.getZ()) / Math.max(1, ticks);
+        mode = Mode.FALLING;
+    }
+
+    private void fall(int moves) {
+        double ny = loc.getY() + vy;
+        vy = (vy - GRAVITY) * DRAG;
+        int poolY = test.getPoolY();
+        if (ny > poolY + 1) {
+            walk(moves, dx, ny - loc.getY(), dz, loc.getYaw());
+            return;
+        }
+        int bx = floor(loc.getX() + dx);
+        int bz = floor(loc.getZ() + dz);
+        if (test.getBlockType(bx, poolY, bz) == Material.STATIONARY_WATER) {
+            walk(Math.max(1, moves), dx, poolY + 0.2 - loc.getY(), dz, loc.getYaw());
+            mode = Mode.SWIMMING;
+            nextActionTick = now() + treadWater();
+        } else {
+            walk(Math.max(1, moves), dx, poolY + 1 - loc.getY(), dz, loc.getYaw());
+            mode = Mode.DEAD;
+            nextActionTick = now() + 20 + rnd.nextInt(40);
+            test.die(this);
+        }
+    }
+
+    private void swim(int moves) {
+        if (now() < nextActionTick) {
+            walk(moves, 0, 0, 0, loc.getYaw() + (float) rnd.nextGaussian() * 3);
+            return;
+        }
+        // Head for the nearest edge.
+        Location c = test.getPoolCenter();
+        double ddx = loc.getX() - c.getX();
+        double ddz = loc.getZ() - c.getZ();
+        double sx = 0;
+        double sz = 0;
+        if (Math.abs(ddx) > Math.abs(ddz)) {
+            sx = Math.signum(ddx) * SWIM_SPEED;
+        } else {
+            sz = (ddz == 0 ? 1 : Math.signum(ddz)) * SWIM_SPEED;
+        }
+        int poolY = test.getPoolY();
+        int bx = floor(loc.getX() + sx);
+        int bz = floor(loc.getZ() + sz);
+        double sy = 0;
+        if (test.getBlockType(bx, poolY, bz) != Material.STATIONARY_WATER) {
+            // Climb out onto the edge.
+            sy = poolY + 1 - loc.getY();
+        }
+        walk(Math.max(1, moves), sx, sy, sz, loc.getYaw());
+    }
+
+    /* Move by (mx, my, mz) this tick, as the given number of move
+     * events.
+     */
+    private void walk(int moves, double mx, double my, double mz, float yaw) {
+        if (moves == 0) {
+            loc = new Location(loc.getWorld(), loc.getX() + mx, loc.getY() + my,
+                               loc.getZ() + mz, yaw, loc.getPitch());
+            return;
+        }
+        Location start = loc;
+        for (int i = 1; i <= moves && mode != Mode.OFFLINE; i++) {
+            double f = (double) i / moves;
+            Location to = new Location(start.getWorld(),
+                start.getX() + mx * f, start.getY() + my * f, start.getZ() + mz * f,
+                yaw, start.getPitch());
+            Location from = loc;
+            loc = to;
+            test.move(this, from, to);
+            if (loc != to) {
+                // Teleported by the plugin in the middle of the move.
+                return;
+            }
+        }
+    }
+
+    private long hesitation() {
+        if (rnd.nextDouble() < test.getStallChance()) {
+            return test.getStallTicks();
+        }
+        return 10 + (long) (-Math.log(1 - rnd.nextDouble()) * 40);
+    }
+
+    private long treadWater() {
+        if (rnd.nextDouble() < test.getStallChance()) {
+            return test.getStallTicks();
+        }
+        return 10 + rnd.nextInt(60);
+    }
+
+    private long now() {
+        return test.getTick();
+    }
+
+    private static int floor(double d) {
+        int i = (int) d;
+        return (d < i) ? i - 1 : i;
+    }
+
+}
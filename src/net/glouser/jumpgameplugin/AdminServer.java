@@ -0,0 +1,440 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import net.glouser.jumpgameplugin.event.JumpEliminationEvent;
+import net.glouser.jumpgameplugin.event.JumpGameStartEvent;
+import net.glouser.jumpgameplugin.event.JumpMissEvent;
+import net.glouser.jumpgameplugin.event.JumpSplashdownEvent;
+import net.glouser.jumpgameplugin.event.JumpTurnStartEvent;
+import net.glouser.jumpgameplugin.event.JumpWinEvent;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+
+/* Small HTTP API for controlling the jump game from a web panel.
+ * Only listens on the loopback interface, and actions need a token:
+ * that alone doesn't keep out other local processes, or web pages in
+ * a browser on the same machine.
+ *
+ *   GET  /state    current game state
+ *   GET  /history  the game's recent snapshots, newest first
+ *   GET  /metrics  counters
+ *   GET  /events   Server-Sent Events stream of turns, jumps, eliminations
+ *   POST /start, /reset, /add?player=NAME, /remove?player=NAME
+ *
+ * GET requests are answered from the snapshots the game publishes on
+ * every change (see GameSnapshot), so polling never waits on the
+ * server. Actions go through the game's command queue and the request
+ * waits for the result.
+ */
+public class AdminServer implements Listener {
+
+    private static int ACTION_TIMEOUT_SECS = 5;
+    private static int HEARTBEAT_SECS = 15;
+    private static int MAX_STREAMS = 16;
+    private static int STREAM_QUEUE_SIZE = 256;
+    private static int DEFAULT_HISTORY = 16;
+
+    /* A snapshot and its JSON, replaced together. */
+    private static class StateJson {
+        GameSnapshot snapshot;
+        String json;
+    }
+
+    private Plugin plugin;
+    private JumpGame game;
+    private GameCommandQueue commands;
+    private String token;
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile StateJson stateJson;
+    private List<BlockingQueue<String>> streams;
+
+    private AtomicLong requests;
+    private AtomicLong gamesStarted;
+    private AtomicLong turns;
+    private AtomicLong splashdowns;
+    private AtomicLong misses;
+    private AtomicLong eliminations;
+
+    public AdminServer(Plugin plugin, JumpGame game, GameCommandQueue commands) {
+        this.plugin = plugin;
+        this.game = game;
+        this.commands = commands;
+        streams = new CopyOnWriteArrayList<BlockingQueue<String>>();
+        requests = new AtomicLong();
+        gamesStarted = new AtomicLong();
+        turns = new AtomicLong();
+        splashdowns = new AtomicLong();
+        misses = new AtomicLong();
+        eliminations = new AtomicLong();
+    }
+
+    /* Start listening on localhost. Actions require an
+     * "Authorization: Bearer <token>" header, so token must not be
+     * empty.
+     */
+    public void start(int port, String token) throws IOException {
+        if (token == null || token.length() == 0) {
+            throw new IllegalArgumentException("Admin API token is empty");
+        }
+        this.token = token;
+        server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "JumpGame-http");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/state", new HttpHandler() {
+            public void handle(HttpExchange ex) throws IOException {
+                if (checkMethod(ex, "GET")) {
+                    send(ex, 200, stateJson());
+                }
+            }
+        });
+        server.createContext("/history", new HttpHandler() {
+            public void handle(HttpExchange ex) throws IOException {
+                if (checkMethod(ex, "GET")) {
+                    int max = DEFAULT_HISTORY;
+                    String param = queryParam(ex, "max");
+                    if (param.length() > 0) {
+                        try {
+                            max = Integer.parseInt(param);
+                        } catch (NumberFormatException e) {
+                            max = 0;
+                        }
+                        if (max <= 0) {
+                            send(ex, 400, "{\"error\":\"bad max\"}");
+                            return;
+                        }
+                    }
+                    send(ex, 200, historyJson(max));
+                }
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange ex) throws IOException {
+                if (checkMethod(ex, "GET")) {
+                    send(ex, 200, metricsJson());
+                }
+            }
+        });
+        server.createContext("/events", new HttpHandler() {
+            public void handle(HttpExchange ex) throws IOException {
+                if (checkMethod(ex, "GET")) {
+                    stream(ex);
+                }
+            }
+        });
+        server.createContext("/start", new ActionHandler() {
+            String act(String player) {
+                return game.start().toString();
+            }
+        });
+        server.createContext("/reset", new ActionHandler() {
+            String act(String player) {
+                game.reset();
+                return "SUCCESS";
+            }
+        });
+        server.createContext("/add", new ActionHandler() {
+            String act(String player) {
+                Player p = plugin.getServer().getPlayerExact(player);
+                return (p == null) ? "FAILED_NOT_ONLINE" : game.addPlayer(p).toString();
+            }
+        });
+        server.createContext("/remove", new ActionHandler() {
+            String act(String player) {
+                Player p = plugin.getServer().getPlayerExact(player);
+                return (p == null) ? "FAILED_NOT_ONLINE" : game.removePlayer(p).toString();
+            }
+        });
+        server.start();
+        plugin.getLogger().info("Admin API listening on 127.0.0.1:" + port);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        streams.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onGameStart(JumpGameStartEvent event) {
+        gamesStarted.incrementAndGet();
+        publish("start", "{\"players\":" + event.getPlayers().size() + "}");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTurnStart(JumpTurnStartEvent event) {
+        turns.incrementAndGet();
+        publish("turn", "{\"player\":" + quote(event.getPlayer().getName())
+            + ",\"turn\":" + event.getTurn() + "}");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSplashdown(JumpSplashdownEvent event) {
+        splashdowns.incrementAndGet();
+        publish("splashdown", "{\"player\":" + quote(event.getPlayer().getName()) + "}");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onMiss(JumpMissEvent event) {
+        misses.incrementAndGet();
+        publish("miss", "{\"player\":" + quote(event.getPlayer().getName()) + "}");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onElimination(JumpEliminationEvent event) {
+        eliminations.incrementAndGet();
+        publish("elimination", "{\"player\":" + quote(event.getPlayer().getName()) + "}");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWin(JumpWinEvent event) {
+        publish("win", "{\"player\":" + quote(event.getWinner().getName())
+            + ",\"jumps\":" + event.getJumpCount() + "}");
+    }
+
+    /* Handler for POST actions that must run on the main thread.
+     */
+    private abstract class ActionHandler implements HttpHandler {
+        abstract String act(String player);
+
+        public void handle(HttpExchange ex) throws IOException {
+            if (!checkMethod(ex, "POST")) { return; }
+            if (!("Bearer " + token).equals(ex.getRequestHeaders().getFirst("Authorization"))) {
+                send(ex, 401, "{\"error\":\"unauthorized\"}");
+                return;
+            }
+            final String player = queryParam(ex, "player");
+            GameCommandQueue.Command<String> cmd = new GameCommandQueue.Command<String>() {
+                public String run(JumpGame game) {
+                    return act(player);
+                }
+            };
+            String result;
+            try {
+                result = commands.submit(cmd).get(ACTION_TIMEOUT_SECS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                send(ex, 503, "{\"error\":" + quote(e.toString()) + "}");
+                return;
+            }
+            send(ex, 200, "{\"result\":" + quote(result) + "}");
+        }
+    }
+
+    /* JSON for the latest snapshot, made once per snapshot. Any thread.
+     */
+    private String stateJson() {
+        GameSnapshot snap = game.getSnapshot();
+        StateJson sj = stateJson;
+        if (sj == null || sj.snapshot != snap) {
+            sj = new StateJson();
+            sj.snapshot = snap;
+            sj.json = toJson(snap);
+            stateJson = sj;
+        }
+        return sj.json;
+    }
+
+    private String historyJson(int max) {
+        StringBuilder sb = new StringBuilder("[");
+        List<GameSnapshot> history = game.getSnapshotHistory(max);
+        for (int i = 0; i < history.size(); i++) {
+            if (i > 0) { sb.append(","); }
+            sb.append(toJson(history.get(i)));
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    private static String toJson(GameSnapshot snap) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"version\":").append(snap.getVersion());
+        sb.append(",\"time\":").append(snap.getTime());
+        sb.append(",\"state\":").append(quote(snap.getState()));
+        sb.append(",\"players\":[");
+        appendNames(sb, snap.getPlayers());
+        sb.append("]");
+        if (snap.isInProgress()) {
+            String current = snap.getCurrentPlayer();
+            sb.append(",\"mode\":").append(quote(snap.getMode()));
+            sb.append(",\"round\":").append(snap.getRound());
+            sb.append(",\"current\":").append(current == null ? "null" : quote(current));
+            sb.append(",\"jumping\":[");
+            appendNames(sb, snap.getJumping());
+            sb.append("]");
+            sb.append(",\"contenders\":").append(snap.getContenders());
+            sb.append(",\"couldReturn\":[");
+            appendNames(sb, snap.getCouldReturn());
+            sb.append("]");
+            sb.append(",\"jumps\":").append(snap.getJumps());
+        }
+        sb.append(",\"waterLeft\":").append(snap.getWaterLeft());
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private String metricsJson() {
+        TickWatchdog watchdog = game.getWatchdog();
+        return "{\"requests\":" + requests.get()
+            + ",\"gamesStarted\":" + gamesStarted.get()
+            + ",\"turns\":" + turns.get()
+            + ",\"splashdowns\":" + splashdowns.get()
+            + ",\"misses\":" + misses.get()
+            + ",\"eliminations\":" + eliminations.get()
+            + ",\"streams\":" + streams.size()
+            + ",\"tps\":" + Math.round(watchdog.getTps() * 100) / 100.0
+            + ",\"ticksOverBudget\":" + watchdog.getTicksOverBudget()
+            + ",\"ticksLowTps\":" + watchdog.getTicksLowTps()
+            + ",\"shedMessages\":" + watchdog.getShedCount(TickWatchdog.Work.MESSAGE)
+            + ",\"shedHud\":" + watchdog.getShedCount(TickWatchdog.Work.HUD)
+            + ",\"shedBlocks\":" + watchdog.getShedCount(TickWatchdog.Work.BLOCKS)
+            + ",\"snapshotVersion\":" + game.getSnapshot().getVersion()
+            + ",\"snapshotAgeMillis\":" + (System.currentTimeMillis() - game.getSnapshot().getTime())
+            + "}";
+    }
+
+    private void publish(String event, String data) {
+        String msg = "event: " + event + "\ndata: " + data + "\n\n";
+        for (BlockingQueue<String> q : streams) {
+            // A client that can't keep up loses events rather than
+            // holding memory.
+            q.offer(msg);
+        }
+    }
+
+    private void stream(HttpExchange ex) throws IOException {
+        if (streams.size() >= MAX_STREAMS) {
+            send(ex, 503, "{\"error\":\"too many streams\"}");
+            return;
+        }
+        BlockingQueue<String> q = new LinkedBlockingQueue<String>(STREAM_QUEUE_SIZE);
+        streams.add(q);
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+        OutputStream out = ex.getResponseBody();
+        try {
+            out.write(("event: state\ndata: " + stateJson() + "\n\n").getBytes("UTF-8"));
+            out.flush();
+            while (true) {
+                String msg = q.poll(HEARTBEAT_SECS, TimeUnit.SECONDS);
+                out.write((msg == null ? ":\n\n" : msg).getBytes("UTF-8"));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            // Server is shutting down.
+        } catch (IOException e) {
+            // Client went away.
+        } finally {
+            streams.remove(q);
+            ex.close();
+        }
+    }
+
+    private boolean checkMethod(HttpExchange ex, String method) throws IOException {
+        requests.incrementAndGet();
+        if (!method.equals(ex.getRequestMethod())) {
+            ex.getResponseHeaders().set("Allow", method);
+            send(ex, 405, "{\"error\":\"method not allowed\"}");
+            return false;
+        }
+        return true;
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        OutputStream out = ex.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String queryParam(HttpExchange ex, String name) throws UnsupportedEncodingException {
+        String query = ex.getRequestURI().getRawQuery();
+        if (query == null) { return ""; }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            }
+        }
+        return "";
+    }
+
+    private static void appendNames(StringBuilder sb, List<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) { sb.append(","); }
+            sb.append(quote(names.get(i)));
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+}
@@ -0,0 +1,308 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+/* The players watching the game: everyone in a chunk within
+ * audienceRadius blocks of the arena, rounded out to whole chunks.
+ *
+ * Every online player is filed in a bucket for the chunk they are in.
+ * A player only changes buckets when they cross into another chunk, so
+ * almost all move events are dismissed after comparing a few ints.
+ * Sending to the audience visits the buckets of the arena's chunks and
+ * never looks at anyone else. Moving the arena or changing the radius
+ * only recomputes the set of arena chunks.
+ *
+ * Events may come in on any region thread. The maps and buckets are
+ * concurrent, so sending needs no locks; a bucket is only locked
+ * while a player is filed in it or it is dropped for being empty.
+ */
+public class ArenaAudience implements Listener {
+
+    /* The chunks in view of the arena. Replaced, never changed. */
+    private static class Area {
+        World world;
+        Set<Long> chunks;
+    }
+
+    /* Where a player is filed. */
+    private static class Spot {
+        Map<Long, Set<Player>> world;
+        long key;
+        Set<Player> bucket;
+    }
+
+    private static Area NO_AREA = new Area();
+
+    static {
+        NO_AREA.chunks = Collections.emptySet();
+    }
+
+    private ConcurrentHashMap<World, Map<Long, Set<Player>>> buckets;
+    private ConcurrentHashMap<Player, Spot> where;
+    private volatile Area area;
+    private List<Location> arena;
+    private JumpPool pool;
+    private int radius;
+
+    public ArenaAudience() {
+        buckets = new ConcurrentHashMap<World, Map<Long, Set<Player>>>();
+        where = new ConcurrentHashMap<Player, Spot>();
+        area = NO_AREA;
+        arena = new ArrayList<Location>();
+        radius = 48;
+    }
+
+    /* Distance in blocks from the arena at which players still get game
+     * messages. 0 limits the audience to the arena's own chunks.
+     */
+    public void setRadius(int blocks) {
+        radius = Math.max(0, blocks);
+        rebuildArea();
+    }
+
+    /* The arena is the chunks containing the given locations and the
+     * pool. Null locations are ignored.
+     */
+    public void setArena(List<Location> locations, JumpPool pool) {
+        arena = new ArrayList<Location>(locations);
+        this.pool = pool;
+        rebuildArea();
+    }
+
+    /* File players who are already online. The audience is only kept
+     * up to date while it is registered for events, so this is called
+     * each time it is registered.
+     */
+    public void addAll(Player[] ps) {
+        for (Player p : ps) {
+            moveTo(p, p.getLocation());
+        }
+    }
+
+    /* Forget everyone, when the audience stops getting events.
+     */
+    public void clear() {
+        where.clear();
+        buckets.clear();
+    }
+
+    /* Everyone in the audience right now.
+     */
+    public List<Player> getSpectators() {
+        List<Player> result = new ArrayList<Player>();
+        Area a = area;
+        Map<Long, Set<Player>> wb = (a.world == null) ? null : buckets.get(a.world);
+        if (wb == null) {
+            return result;
+        }
+        for (Set<Player> b : arenaBuckets(a, wb)) {
+            result.addAll(b);
+        }
+        return result;
+    }
+
+    /* Send a message to everyone in the audience, except the given
+     * players, who have presumably been told already.
+     */
+    public void send(String msg, Collection<Player> except) {
+        Area a = area;
+        Map<Long, Set<Player>> wb = (a.world == null) ? null : buckets.get(a.world);
+        if (wb == null) {
+            return;
+        }
+        for (Set<Player> b : arenaBuckets(a, wb)) {
+            for (Player p : b) {
+                if (!except.contains(p)) {
+                    p.sendMessage(msg);
+                }
+            }
+        }
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        moveTo(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        leave(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        movedTo(event.getPlayer(), event.getFrom(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        movedTo(event.getPlayer(), event.getFrom(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        moveTo(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        moveTo(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    private void movedTo(Player p, Location from, Location to) {
+        if (to == null) {
+            return;
+        }
+        if ((from.getBlockX() >> 4) == (to.getBlockX() >> 4)
+              && (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4)
+              && from.getWorld() == to.getWorld()) {
+            return;
+        }
+        moveTo(p, to);
+    }
+
+    private void moveTo(Player p, Location to) {
+        if (to == null || to.getWorld() == null) {
+            return;
+        }
+        leave(p);
+        Spot s = new Spot();
+        s.world = buckets.get(to.getWorld());
+        if (s.world == null) {
+            Map<Long, Set<Player>> wb = new ConcurrentHashMap<Long, Set<Player>>();
+            Map<Long, Set<Player>> had = buckets.putIfAbsent(to.getWorld(), wb);
+            s.world = (had != null) ? had : wb;
+        }
+        s.key = key(to.getBlockX() >> 4, to.getBlockZ() >> 4);
+        while (s.bucket == null) {
+            Set<Player> b = s.world.get(s.key);
+            if (b == null) {
+                b = Collections.newSetFromMap(new ConcurrentHashMap<Player, Boolean>());
+                Set<Player> had = s.world.putIfAbsent(s.key, b);
+                if (had != null) {
+                    b = had;
+                }
+            }
+            synchronized (b) {
+                // Unless it was dropped as empty in the meantime.
+                if (s.world.get(s.key) == b) {
+                    b.add(p);
+                    s.bucket = b;
+                }
+            }
+        }
+        where.put(p, s);
+    }
+
+    private void leave(Player p) {
+        Spot s = where.remove(p);
+        if (s != null) {
+            synchronized (s.bucket) {
+                s.bucket.remove(p);
+                if (s.bucket.isEmpty()) {
+                    // Empty buckets are dropped so the maps only hold
+                    // chunks someone is standing in.
+                    s.world.remove(s.key, s.bucket);
+                }
+            }
+        }
+    }
+
+    /* The buckets in the area, looking up whichever of the area's chunks
+     * or the occupied chunks are fewer.
+     */
+    private List<Set<Player>> arenaBuckets(Area a, Map<Long, Set<Player>> wb) {
+        List<Set<Player>> result = new ArrayList<Set<Player>>();
+        if (a.chunks.size() <= wb.size()) {
+            for (Long key : a.chunks) {
+                Set<Player> b = wb.get(key);
+                if (b != null) {
+                    result.add(b);
+                }
+            }
+        } else {
+            for (Map.Entry<Long, Set<Player>> e : wb.entrySet()) {
+                if (a.chunks.contains(e.getKey())) {
+                    result.add(e.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void rebuildArea() {
+        Area a = new Area();
+        Set<Long> centers = new HashSet<Long>();
+        for (Location l : arena) {
+            if (l != null && l.getWorld() != null) {
+                if (a.world == null) {
+                    a.world = l.getWorld();
+                }
+                if (l.getWorld() == a.world) {
+                    centers.add(key(l.getBlockX() >> 4, l.getBlockZ() >> 4));
+                }
+            }
+        }
+        if (pool != null && pool.getWorld() != null
+              && (a.world == null || pool.getWorld() == a.world)) {
+            a.world = pool.getWorld();
+            for (int i = 0; i < pool.size(); i++) {
+                centers.add(key(pool.getX(i) >> 4, pool.getZ(i) >> 4));
+            }
+        }
+        int r = (radius + 15) >> 4;
+        a.chunks = new HashSet<Long>();
+        for (long c : centers) {
+            int cx = (int) (c >> 32);
+            int cz = (int) c;
+            for (int dx = -r; dx <= r; dx++) {
+                for (int dz = -r; dz <= r; dz++) {
+                    a.chunks.add(key(cx + dx, cz + dz));
+                }
+            }
+        }
+        area = (a.world == null) ? NO_AREA : a;
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xffffffffL);
+    }
+
+}
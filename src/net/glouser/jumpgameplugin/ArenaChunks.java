@@ -0,0 +1,159 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/* Keeps the chunks under the arena loaded while a game is starting or
+ * running. Teleporting a player into an unloaded chunk, or writing pool
+ * blocks there, forces a synchronous chunk load on the main thread. The
+ * chunks are loaded a few at a time during the start countdown and then
+ * held until the game is over, with plugin chunk tickets where the
+ * server has them, or else by cancelling their unload events.
+ */
+public class ArenaChunks implements Listener {
+
+    private static int CHUNKS_PER_TICK = 2;
+
+    // Newer servers hold chunks with tickets instead, and their
+    // ChunkUnloadEvent can't be cancelled.
+    private static boolean UNLOAD_CANCELLABLE =
+        Cancellable.class.isAssignableFrom(ChunkUnloadEvent.class);
+
+    private Platform platform;
+    private volatile World world;
+    private Location home;
+    private Set<Long> pinned;
+    private List<Long> ticketed;
+    private Platform.Task preloadTask;
+
+    public ArenaChunks(Platform platform) {
+        this.platform = platform;
+        pinned = new HashSet<Long>();
+        ticketed = new ArrayList<Long>();
+    }
+
+    /* Pin the chunks containing the given locations and the pool.
+     * Null locations are ignored. Replaces any previous pin.
+     */
+    public void pin(List<Location> locations, JumpPool pool) {
+        release();
+        for (Location l : locations) {
+            if (l != null) {
+                if (home == null) {
+                    home = l;
+                }
+                add(l.getWorld(), l.getBlockX() >> 4, l.getBlockZ() >> 4);
+            }
+        }
+        World poolWorld = pool.getWorld();
+        for (int i = 0; i < pool.size() && poolWorld != null; i++) {
+            add(poolWorld, pool.getX(i) >> 4, pool.getZ(i) >> 4);
+        }
+    }
+
+    /* Load any pinned chunks that are not already loaded, spread over
+     * several ticks, and take a ticket on each one once it is loaded.
+     */
+    public void preload() {
+        if (world == null) { return; }
+        cancelPreload();
+        final List<Long> pending = new ArrayList<Long>(pinned);
+        final Set<Long> requested = new HashSet<Long>();
+        Runnable r = new Runnable() {
+            public void run() {
+                int loads = 0;
+                Iterator<Long> iter = pending.iterator();
+                while (iter.hasNext()) {
+                    long key = iter.next();
+                    int cx = (int) (key >> 32);
+                    int cz = (int) key;
+                    if (world.isChunkLoaded(cx, cz)) {
+                        // Taking a ticket on an unloaded chunk would
+                        // load it synchronously, so wait until it's in.
+                        if (platform.addChunkTicket(world, cx, cz)) {
+                            ticketed.add(key);
+                        }
+                        iter.remove();
+                    } else if (loads < CHUNKS_PER_TICK && requested.add(key)) {
+                        platform.loadChunk(world, cx, cz);
+                        loads += 1;
+                    }
+                }
+                if (pending.size() == 0) {
+                    cancelPreload();
+                }
+            }
+        };
+        preloadTask = platform.runTimer(home, r, 1, 1);
+    }
+
+    public void release() {
+        cancelPreload();
+        for (long key : ticketed) {
+            platform.removeChunkTicket(world, (int) (key >> 32), (int) key);
+        }
+        ticketed.clear();
+        pinned.clear();
+        world = null;
+        home = null;
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        if (world == null || !UNLOAD_CANCELLABLE) { return; }
+        Chunk c = event.getChunk();
+        if (c.getWorld() == world && pinned.contains(key(c.getX(), c.getZ()))) {
+            event.setCancelled(true);
+        }
+    }
+
+    private void add(World w, int cx, int cz) {
+        if (world == null) {
+            world = w;
+        } else if (w != world) {
+            // All jump game elements are kept in the same world.
+            return;
+        }
+        pinned.add(key(cx, cz));
+    }
+
+    private void cancelPreload() {
+        if (preloadTask != null) {
+            preloadTask.cancel();
+            preloadTask = null;
+        }
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xffffffffL);
+    }
+
+}
@@ -0,0 +1,118 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/* Puts an arena back the way an ArenaSnapshot has it, a slice at a time.
+ * Each tick, up to checksPerTick blocks are compared with the snapshot
+ * and up to changesPerTick of those that differ are set back, so even a
+ * badly wrecked arena doesn't cause a tick spike. Blocks are set
+ * without physics so water and sand stay put until the whole arena is
+ * back.
+ */
+public class ArenaRestorer {
+
+    public interface Callback {
+        void done(int changed);
+    }
+
+    private Platform platform;
+    private int checksPerTick;
+    private int changesPerTick;
+
+    private ArenaSnapshot snapshot;
+    private World world;
+    private int next;
+    private int changed;
+    private Callback callback;
+    private Platform.Task tickTask;
+
+    public ArenaRestorer(Platform platform) {
+        this.platform = platform;
+        checksPerTick = 8192;
+        changesPerTick = 256;
+    }
+
+    public void setBudget(int checks, int changes) {
+        checksPerTick = Math.max(1, checks);
+        changesPerTick = Math.max(1, changes);
+    }
+
+    public boolean isRunning() {
+        return tickTask != null;
+    }
+
+    /* Start restoring. The work runs on the thread that owns home
+     * (see Platform), which should be in the arena.
+     */
+    public void start(ArenaSnapshot s, World w, Location home, Callback cb) {
+        cancel();
+        snapshot = s;
+        world = w;
+        next = 0;
+        changed = 0;
+        callback = cb;
+        Runnable r = new Runnable() {
+            public void run() {
+                step();
+            }
+        };
+        tickTask = platform.runTimer(home, r, 1, 1);
+    }
+
+    public void cancel() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        snapshot = null;
+    }
+
+    private void step() {
+        if (snapshot == null) {
+            return;
+        }
+        int checks = 0;
+        int changes = 0;
+        int size = snapshot.size();
+        while (next < size && checks < checksPerTick && changes < changesPerTick) {
+            int i = next++;
+            checks += 1;
+            Block b = world.getBlockAt(snapshot.getX(i), snapshot.getY(i), snapshot.getZ(i));
+            int typeId = snapshot.getTypeId(i);
+            byte data = snapshot.getData(i);
+            if (b.getTypeId() != typeId || b.getData() != data) {
+                b.setTypeIdAndData(typeId, data, false);
+                changes += 1;
+            }
+        }
+        changed += changes;
+        if (next >= size) {
+            Callback cb = callback;
+            cancel();
+            if (cb != null) {
+                cb.done(changed);
+            }
+        }
+    }
+
+}
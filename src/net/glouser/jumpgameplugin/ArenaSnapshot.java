@@ -0,0 +1,238 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+/* The blocks in a box around the arena, so they can be put back the way
+ * they were after a game (or some griefing).
+ *
+ * Each block is stored as an index into a palette of the distinct
+ * (type id, data) pairs in the box. Indexes are packed into longs with
+ * as few bits as the palette needs; an arena is mostly air, stone and
+ * water, so that is usually 3-5 bits a block. The file is gzipped on
+ * top of that. Block contents like sign text and chest items are not
+ * kept.
+ */
+public class ArenaSnapshot {
+
+    private static int MAGIC = 0x4a474153; // "JGAS"
+    private static int VERSION = 1;
+
+    private String worldName;
+    private int minX;
+    private int minY;
+    private int minZ;
+    private int sizeX;
+    private int sizeY;
+    private int sizeZ;
+
+    private int[] palette;
+    private int bits;
+    private long[] data;
+
+    private ArenaSnapshot() {
+    }
+
+    /* Capture the blocks from (x1, y1, z1) to (x2, y2, z2) inclusive.
+     * Must be called on the thread that owns the area. Chunk snapshots
+     * are taken first so the blocks are read from plain arrays.
+     */
+    public static ArenaSnapshot capture(World world, int x1, int y1, int z1,
+            int x2, int y2, int z2) {
+        ArenaSnapshot s = new ArenaSnapshot();
+        s.worldName = world.getName();
+        s.minX = Math.min(x1, x2);
+        s.minY = Math.max(0, Math.min(y1, y2));
+        s.minZ = Math.min(z1, z2);
+        s.sizeX = Math.abs(x2 - x1) + 1;
+        s.sizeY = Math.min(world.getMaxHeight() - 1, Math.max(y1, y2)) - s.minY + 1;
+        s.sizeZ = Math.abs(z2 - z1) + 1;
+
+        HashMap<Long, ChunkSnapshot> chunks = new HashMap<Long, ChunkSnapshot>();
+        for (int cx = s.minX >> 4; cx <= (s.minX + s.sizeX - 1) >> 4; cx++) {
+            for (int cz = s.minZ >> 4; cz <= (s.minZ + s.sizeZ - 1) >> 4; cz++) {
+                chunks.put(chunkKey(cx, cz), world.getChunkAt(cx, cz).getChunkSnapshot());
+            }
+        }
+
+        int[] keys = new int[s.size()];
+        HashMap<Integer, Integer> paletteIndex = new HashMap<Integer, Integer>();
+        int i = 0;
+        for (int y = 0; y < s.sizeY; y++) {
+            for (int z = 0; z < s.sizeZ; z++) {
+                for (int x = 0; x < s.sizeX; x++) {
+                    int wx = s.minX + x;
+                    int wy = s.minY + y;
+                    int wz = s.minZ + z;
+                    ChunkSnapshot cs = chunks.get(chunkKey(wx >> 4, wz >> 4));
+                    int key = blockKey(cs.getBlockTypeId(wx & 15, wy, wz & 15),
+                                       cs.getBlockData(wx & 15, wy, wz & 15));
+                    Integer idx = paletteIndex.get(key);
+                    if (idx == null) {
+                        idx = paletteIndex.size();
+                        paletteIndex.put(key, idx);
+                    }
+                    keys[i++] = idx;
+                }
+            }
+        }
+
+        s.palette = new int[paletteIndex.size()];
+        for (Map.Entry<Integer, Integer> e : paletteIndex.entrySet()) {
+            s.palette[e.getValue()] = e.getKey();
+        }
+        s.bits = bitsFor(s.palette.length);
+        s.data = new long[longsFor(s.size(), s.bits)];
+        for (i = 0; i < keys.length; i++) {
+            s.set(i, keys[i]);
+        }
+        return s;
+    }
+
+    public String getWorldName() { return worldName; }
+
+    /* Number of blocks in the box. */
+    public int size() {
+        return sizeX * sizeY * sizeZ;
+    }
+
+    /* Block coordinates of the i'th block. Blocks go x, then z, then y. */
+    public int getX(int i) { return minX + i % sizeX; }
+    public int getY(int i) { return minY + i / (sizeX * sizeZ); }
+    public int getZ(int i) { return minZ + (i / sizeX) % sizeZ; }
+
+    public int getTypeId(int i) {
+        return palette[get(i)] >>> 4;
+    }
+
+    public byte getData(int i) {
+        return (byte) (palette[get(i)] & 0xf);
+    }
+
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new GZIPOutputStream(new FileOutputStream(file))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(worldName);
+            out.writeInt(minX);
+            out.writeInt(minY);
+            out.writeInt(minZ);
+            out.writeInt(sizeX);
+            out.writeInt(sizeY);
+            out.writeInt(sizeZ);
+            out.writeInt(palette.length);
+            for (int p : palette) {
+                out.writeInt(p);
+            }
+            out.writeByte(bits);
+            for (long l : data) {
+                out.writeLong(l);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    public static ArenaSnapshot read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(new FileInputStream(file))));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not an arena snapshot: " + file);
+            }
+            ArenaSnapshot s = new ArenaSnapshot();
+            s.worldName = in.readUTF();
+            s.minX = in.readInt();
+            s.minY = in.readInt();
+            s.minZ = in.readInt();
+            s.sizeX = in.readInt();
+            s.sizeY = in.readInt();
+            s.sizeZ = in.readInt();
+            s.palette = new int[in.readInt()];
+            for (int i = 0; i < s.palette.length; i++) {
+                s.palette[i] = in.readInt();
+            }
+            s.bits = in.readByte();
+            if (s.bits != bitsFor(s.palette.length)) {
+                throw new IOException("corrupt arena snapshot: " + file);
+            }
+            s.data = new long[longsFor(s.size(), s.bits)];
+            for (int i = 0; i < s.data.length; i++) {
+                s.data[i] = in.readLong();
+            }
+            return s;
+        } finally {
+            in.close();
+        }
+    }
+
+    /* Entries don't straddle longs, which wastes a few bits per long
+     * but keeps lookups to one shift and mask.
+     */
+    private int get(int i) {
+        int perLong = 64 / bits;
+        long l = data[i / perLong];
+        return (int) ((l >>> ((i % perLong) * bits)) & ((1L << bits) - 1));
+    }
+
+    private void set(int i, int value) {
+        int perLong = 64 / bits;
+        int shift = (i % perLong) * bits;
+        long mask = ((1L << bits) - 1) << shift;
+        data[i / perLong] = (data[i / perLong] & ~mask) | ((long) value << shift);
+    }
+
+    private static int bitsFor(int paletteSize) {
+        int bits = 1;
+        while ((1 << bits) < paletteSize) {
+            bits += 1;
+        }
+        return bits;
+    }
+
+    private static int longsFor(int entries, int bits) {
+        int perLong = 64 / bits;
+        return (entries + perLong - 1) / perLong;
+    }
+
+    private static int blockKey(int typeId, int data) {
+        return (typeId << 4) | (data & 0xf);
+    }
+
+    private static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xffffffffL);
+    }
+
+}
@@ -0,0 +1,97 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/* Plain Bukkit: one main thread, and everything happens synchronously.
+ */
+public class BukkitPlatform implements Platform {
+
+    protected Plugin plugin;
+
+    public BukkitPlatform(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public String getName() {
+        return "Bukkit";
+    }
+
+    public boolean isRegionThreaded() {
+        return false;
+    }
+
+    public boolean isOwnedByCurrentThread(Location home) {
+        return plugin.getServer().isPrimaryThread();
+    }
+
+    public void execute(Location home, Runnable r) {
+        if (isOwnedByCurrentThread(home)) {
+            r.run();
+        } else {
+            plugin.getServer().getScheduler().runTask(plugin, r);
+        }
+    }
+
+    public Task runLater(Location home, Runnable r, long delayTicks) {
+        return wrap(plugin.getServer().getScheduler().runTaskLater(plugin, r, delayTicks));
+    }
+
+    public Task runTimer(Location home, Runnable r, long delayTicks, long periodTicks) {
+        return wrap(plugin.getServer().getScheduler().runTaskTimer(plugin, r, delayTicks, periodTicks));
+    }
+
+    public void runFor(Player p, Runnable r) {
+        execute(null, r);
+    }
+
+    public void teleport(Player p, Location dest, Location home, Runnable then) {
+        p.teleport(dest);
+        if (then != null) {
+            execute(home, then);
+        }
+    }
+
+    public void loadChunk(World w, int cx, int cz) {
+        if (!w.isChunkLoaded(cx, cz)) {
+            w.loadChunk(cx, cz);
+        }
+    }
+
+    public boolean addChunkTicket(World w, int cx, int cz) {
+        return false;
+    }
+
+    public void removeChunkTicket(World w, int cx, int cz) {
+    }
+
+    private static Task wrap(final BukkitTask bt) {
+        return new Task() {
+            public void cancel() {
+                bt.cancel();
+            }
+        };
+    }
+
+}
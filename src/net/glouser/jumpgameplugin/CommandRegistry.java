@@ -0,0 +1,149 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/* Looks up and runs JumpCommands, checks their permissions and does
+ * tab completion.
+ *
+ * Online players are kept in a NameTrie, updated as they join and
+ * leave, so completing or looking up a name doesn't go through every
+ * player on the server.
+ */
+public class CommandRegistry {
+
+    private static String MAIN_COMMAND = "jump";
+    private static int MAX_COMPLETIONS = 50;
+
+    private List<JumpCommand> commands;
+    private HashMap<String, JumpCommand> byOldName;
+    private NameTrie<JumpCommand> byName;
+    private NameTrie<Player> players;
+
+    public CommandRegistry() {
+        commands = new ArrayList<JumpCommand>();
+        byOldName = new HashMap<String, JumpCommand>();
+        byName = new NameTrie<JumpCommand>();
+        players = new NameTrie<Player>();
+    }
+
+    public void register(JumpCommand c) {
+        commands.add(c);
+        byName.put(c.getName(), c);
+        if (c.getOldName() != null) {
+            byOldName.put(c.getOldName().toLowerCase(), c);
+        }
+    }
+
+    public void playerJoined(Player p) {
+        players.put(p.getName(), p);
+    }
+
+    public void playerLeft(Player p) {
+        players.remove(p.getName());
+    }
+
+    /* An online player by name, or by the start of their name.
+     */
+    public Player findPlayer(String name) {
+        return players.match(name);
+    }
+
+    /* Run /jump <sub> [args] or an old stand-alone command.
+     */
+    public void dispatch(CommandSender sender, String cmdName, String[] args) {
+        JumpCommand c;
+        String[] subArgs;
+        String prefix;
+        if (cmdName.equalsIgnoreCase(MAIN_COMMAND)) {
+            c = (args.length > 0) ? lookup(args[0]) : null;
+            if (c == null) {
+                help(sender);
+                return;
+            }
+            subArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, subArgs, 0, subArgs.length);
+            prefix = "/" + MAIN_COMMAND + " " + c.getName();
+        } else {
+            c = byOldName.get(cmdName.toLowerCase());
+            if (c == null) {
+                return;
+            }
+            subArgs = args;
+            prefix = "/" + c.getOldName();
+        }
+
+        if (!sender.hasPermission(c.getPermission())) {
+            sender.sendMessage("You don't have permission for that command.");
+        } else if (!c.run(sender, subArgs)) {
+            sender.sendMessage("Usage: " + prefix + " " + c.getUsage());
+        }
+    }
+
+    public List<String> complete(CommandSender sender, String cmdName, String[] args) {
+        List<String> result = new ArrayList<String>();
+        if (args.length == 0) {
+            return result;
+        }
+        String last = args[args.length - 1];
+        JumpCommand c;
+        if (cmdName.equalsIgnoreCase(MAIN_COMMAND)) {
+            if (args.length == 1) {
+                for (String name : byName.complete(last, MAX_COMPLETIONS)) {
+                    if (sender.hasPermission(lookup(name).getPermission())) {
+                        result.add(name);
+                    }
+                }
+                return result;
+            }
+            c = lookup(args[0]);
+        } else {
+            c = byOldName.get(cmdName.toLowerCase());
+        }
+        if (c != null && c.getArgs() == JumpCommand.Args.PLAYERS
+              && sender.hasPermission(c.getPermission())) {
+            result.addAll(players.complete(last, MAX_COMPLETIONS));
+        }
+        return result;
+    }
+
+    private JumpCommand lookup(String name) {
+        for (JumpCommand c : commands) {
+            if (c.getName().equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private void help(CommandSender sender) {
+        sender.sendMessage("Jump game commands:");
+        for (JumpCommand c : commands) {
+            if (sender.hasPermission(c.getPermission())) {
+                sender.sendMessage("/" + MAIN_COMMAND + " " + c.getName() + " " + c.getUsage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.lang.reflect.Method;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/* Folia runs each region of the world on its own thread. Game state
+ * and timers are kept on the region that owns the arena (the "home"
+ * location), players are touched through their own entity schedulers,
+ * and work with no home goes to the global region. The schedulers are
+ * looked up by reflection, since they aren't part of the Bukkit API we
+ * build against.
+ */
+public class FoliaPlatform extends PaperPlatform {
+
+    private static String PKG = "io.papermc.paper.threadedregions.scheduler.";
+
+    private static Method getRegionScheduler = findMethod(Server.class,
+        PKG + "RegionScheduler", "getRegionScheduler");
+    private static Method getGlobalScheduler = findMethod(Server.class,
+        PKG + "GlobalRegionScheduler", "getGlobalRegionScheduler");
+    private static Method getEntityScheduler = findMethod(Entity.class,
+        PKG + "EntityScheduler", "getScheduler");
+    private static Method isOwnedByCurrentRegion = findMethod(Server.class,
+        "boolean", "isOwnedByCurrentRegion", Location.class);
+    private static Method isGlobalTickThread = findMethod(Server.class,
+        "boolean", "isGlobalTickThread");
+
+    private Method regionExecute;
+    private Method regionRunDelayed;
+    private Method regionRunAtFixedRate;
+    private Method globalExecute;
+    private Method globalRunDelayed;
+    private Method globalRunAtFixedRate;
+    private Method entityExecute;
+    private Method taskCancel;
+    private Class<?> consumerClass;
+
+    public FoliaPlatform(Plugin plugin) throws ClassNotFoundException, NoSuchMethodException {
+        super(plugin);
+        Class<?> region = Class.forName(PKG + "RegionScheduler");
+        Class<?> global = Class.forName(PKG + "GlobalRegionScheduler");
+        Class<?> entity = Class.forName(PKG + "EntityScheduler");
+        Class<?> task = Class.forName(PKG + "ScheduledTask");
+        consumerClass = Class.forName("java.util.function.Consumer");
+        regionExecute = region.getMethod("execute", Plugin.class, Location.class, Runnable.class);
+        regionRunDelayed = region.getMethod("runDelayed", Plugin.class, Location.class,
+            consumerClass, long.class);
+        regionRunAtFixedRate = region.getMethod("runAtFixedRate", Plugin.class, Location.class,
+            consumerClass, long.class, long.class);
+        globalExecute = global.getMethod("execute", Plugin.class, Runnable.class);
+        globalRunDelayed = global.getMethod("runDelayed", Plugin.class, consumerClass, long.class);
+        globalRunAtFixedRate = global.getMethod("runAtFixedRate", Plugin.class,
+            consumerClass, long.class, long.class);
+        entityExecute = entity.getMethod("execute", Plugin.class, Runnable.class,
+            Runnable.class, long.class);
+        taskCancel = task.getMethod("cancel");
+    }
+
+    public static boolean isSupported() {
+        return PaperPlatform.isSupported() && getRegionScheduler != null
+            && getGlobalScheduler != null && getEntityScheduler != null
+            && isOwnedByCurrentRegion != null && isGlobalTickThread != null;
+    }
+
+    @Override
+    public String getName() {
+        return "Folia";
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(Location home) {
+        Object owned = (home == null)
+            ? invoke(isGlobalTickThread, plugin.getServer())
+            : invoke(isOwnedByCurrentRegion, plugin.getServer(), home);
+        return Boolean.TRUE.equals(owned);
+    }
+
+    @Override
+    public void execute(Location home, Runnable r) {
+        if (isOwnedByCurrentThread(home)) {
+            r.run();
+        } else if (home == null) {
+            invoke(globalExecute, globalScheduler(), plugin, r);
+        } else {
+            invoke(regionExecute, regionScheduler(), plugin, home, r);
+        }
+    }
+
+    @Override
+    public Task runLater(Location home, Runnable r, long delayTicks) {
+        // Folia doesn't accept a delay of zero.
+        long delay = Math.max(1, delayTicks);
+        Object t = (home == null)
+            ? invoke(globalRunDelayed, globalScheduler(), plugin, consumer(r), delay)
+            : invoke(regionRunDelayed, regionScheduler(), plugin, home, consumer(r), delay);
+        return wrap(t);
+    }
+
+    @Override
+    public Task runTimer(Location home, Runnable r, long delayTicks, long periodTicks) {
+        long delay = Math.max(1, delayTicks);
+        long period = Math.max(1, periodTicks);
+        Object t = (home == null)
+            ? invoke(globalRunAtFixedRate, globalScheduler(), plugin, consumer(r), delay, period)
+            : invoke(regionRunAtFixedRate, regionScheduler(), plugin, home, consumer(r), delay, period);
+        return wrap(t);
+    }
+
+    @Override
+    public void runFor(Player p, Runnable r) {
+        // If the player has logged off, the task is dropped.
+        invoke(entityExecute, invoke(getEntityScheduler, p), plugin, r, null, 1L);
+    }
+
+    /* Folia only allows an entity to be teleported from the thread
+     * that owns it, so the teleport is started from the player's own
+     * scheduler.
+     */
+    @Override
+    public void teleport(final Player p, final Location dest, final Location home, final Runnable then) {
+        runFor(p, new Runnable() {
+            public void run() {
+                FoliaPlatform.super.teleport(p, dest, home, then);
+            }
+        });
+    }
+
+    private Object regionScheduler() {
+        return invoke(getRegionScheduler, plugin.getServer());
+    }
+
+    private Object globalScheduler() {
+        return invoke(getGlobalScheduler, plugin.getServer());
+    }
+
+    /* A Consumer of the scheduled task that just runs r. */
+    private Object consumer(final Runnable r) {
+        return callback(consumerClass, new Callback() {
+            public void call(Object[] args) {
+                r.run();
+            }
+        });
+    }
+
+    private Task wrap(final Object scheduledTask) {
+        return new Task() {
+            public void cancel() {
+                if (scheduledTask != null) {
+                    invoke(taskCancel, scheduledTask);
+                }
+            }
+        };
+    }
+
+}
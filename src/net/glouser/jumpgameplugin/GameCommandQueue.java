@@ -0,0 +1,198 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bukkit.entity.Player;
+
+/* The way in to the game from other threads and other plugins.
+ *
+ * JumpGame and TurnTracker may only be used on the game's thread.
+ * Commands submitted here from any thread are queued and run there in
+ * the order they came in, at most commandsPerTick each tick, and the
+ * caller gets a Future for the result. Nothing runs while the queue is
+ * empty.
+ *
+ * Don't wait on a future from the game's thread: the command can't run
+ * until that thread is free.
+ */
+public class GameCommandQueue {
+
+    /* Something to do on the game's thread. */
+    public static abstract class Command<T> {
+        public abstract T run(JumpGame game);
+    }
+
+    /* The game as a query saw it. */
+    public static class Status {
+        private String state;
+        private List<String> players;
+        private String currentPlayer;
+        private int round;
+        private int waterLeft;
+        private int jumpCount;
+
+        public String getState() { return state; }
+        public List<String> getPlayers() { return players; }
+        public String getCurrentPlayer() { return currentPlayer; }
+        public int getRound() { return round; }
+        public int getWaterLeft() { return waterLeft; }
+        public int getJumpCount() { return jumpCount; }
+    }
+
+    private static class Pending<T> extends FutureTask<T> {
+        Pending(final JumpGame game, final Command<T> command) {
+            super(new Callable<T>() {
+                public T call() {
+                    return command.run(game);
+                }
+            });
+        }
+
+        void fail(Exception e) {
+            setException(e);
+        }
+    }
+
+    private JumpGame game;
+    private ConcurrentLinkedQueue<Pending<?>> queue;
+    private AtomicBoolean scheduled;
+    private volatile boolean closed;
+    private volatile int commandsPerTick;
+
+    public GameCommandQueue(JumpGame game) {
+        this.game = game;
+        queue = new ConcurrentLinkedQueue<Pending<?>>();
+        scheduled = new AtomicBoolean();
+        commandsPerTick = 20;
+    }
+
+    public void setCommandsPerTick(int n) {
+        commandsPerTick = Math.max(1, n);
+    }
+
+    public <T> Future<T> submit(Command<T> command) {
+        Pending<T> p = new Pending<T>(game, command);
+        if (closed) {
+            p.fail(new IllegalStateException("Jump game is disabled"));
+            return p;
+        }
+        queue.add(p);
+        scheduleDrain();
+        return p;
+    }
+
+    public Future<TurnTracker.AddResult> join(final Player p) {
+        return submit(new Command<TurnTracker.AddResult>() {
+            public TurnTracker.AddResult run(JumpGame game) {
+                return game.addPlayer(p);
+            }
+        });
+    }
+
+    public Future<TurnTracker.RemoveResult> leave(final Player p) {
+        return submit(new Command<TurnTracker.RemoveResult>() {
+            public TurnTracker.RemoveResult run(JumpGame game) {
+                return game.removePlayer(p);
+            }
+        });
+    }
+
+    public Future<JumpGame.StartResult> start() {
+        return submit(new Command<JumpGame.StartResult>() {
+            public JumpGame.StartResult run(JumpGame game) {
+                return game.start();
+            }
+        });
+    }
+
+    public Future<Void> reset() {
+        return submit(new Command<Void>() {
+            public Void run(JumpGame game) {
+                game.reset();
+                return null;
+            }
+        });
+    }
+
+    public Future<Status> query() {
+        return submit(new Command<Status>() {
+            public Status run(JumpGame game) {
+                Status s = new Status();
+                s.state = game.getStateName();
+                List<String> names = new ArrayList<String>();
+                for (Player p : game.getPlayers()) {
+                    names.add(p.getName());
+                }
+                s.players = Collections.unmodifiableList(names);
+                if (game.gameInProgress() && game.getCurrentPlayer() != null) {
+                    s.currentPlayer = game.getCurrentPlayer().getName();
+                }
+                s.round = game.getRoundNum();
+                s.waterLeft = game.getWaterLeft();
+                s.jumpCount = game.getJumpCount();
+                return s;
+            }
+        });
+    }
+
+    /* Stop taking commands and fail the ones still waiting.
+     */
+    public void close() {
+        closed = true;
+        Pending<?> p;
+        while ((p = queue.poll()) != null) {
+            p.fail(new IllegalStateException("Jump game is disabled"));
+        }
+    }
+
+    private void scheduleDrain() {
+        if (scheduled.compareAndSet(false, true)) {
+            game.runLater(new Runnable() {
+                public void run() {
+                    drain();
+                }
+            }, 1);
+        }
+    }
+
+    /* Runs on the game's thread. */
+    private void drain() {
+        int budget = commandsPerTick;
+        Pending<?> p;
+        while (budget > 0 && !closed && (p = queue.poll()) != null) {
+            p.run();
+            budget -= 1;
+        }
+        scheduled.set(false);
+        // Anything left, or added since the last poll, waits for the
+        // next tick.
+        if (!closed && !queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+}
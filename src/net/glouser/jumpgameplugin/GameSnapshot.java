@@ -0,0 +1,122 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.bukkit.entity.Player;
+
+/* The game as it was at one moment, for reading from any thread.
+ *
+ * JumpGame publishes a new snapshot every time something changes, and
+ * never changes one after publishing it. Versions count up by one per
+ * snapshot. Name lists that didn't change are shared with the previous
+ * snapshot rather than copied, so publishing is cheap when, say, only
+ * the current player moved on.
+ */
+public class GameSnapshot {
+
+    private static List<String> NO_NAMES = Collections.emptyList();
+
+    private long version;
+    private long time;
+    private String state;
+    private boolean inProgress;
+    private String mode;
+    private int round;
+    private List<String> players;
+    private String current;
+    private List<String> jumping;
+    private int contenders;
+    private List<String> couldReturn;
+    private int jumps;
+    private int waterLeft;
+
+    GameSnapshot() {
+        state = "NO_GAME";
+        mode = TurnTracker.Mode.CONTINUOUS.toString();
+        players = NO_NAMES;
+        jumping = NO_NAMES;
+        couldReturn = NO_NAMES;
+    }
+
+    GameSnapshot(GameSnapshot prev, String state, boolean inProgress, TurnTracker tt,
+                 Player[] jumpers, int jumps, int waterLeft) {
+        version = prev.version + 1;
+        time = System.currentTimeMillis();
+        this.state = state;
+        this.inProgress = inProgress;
+        mode = tt.getMode().toString();
+        round = tt.getRoundNum();
+        players = names(prev.players, tt.getPlayers());
+        current = (!inProgress || tt.getCurrentPlayer() == null) ? null : tt.getCurrentPlayer().getName();
+        jumping = names(prev.jumping, Arrays.asList(jumpers));
+        contenders = inProgress ? tt.numActivePlayers() : 0;
+        couldReturn = names(prev.couldReturn, tt.getProvisionalOut());
+        this.jumps = jumps;
+        this.waterLeft = waterLeft;
+    }
+
+    public long getVersion() { return version; }
+
+    /* When it was published, in System.currentTimeMillis() terms. */
+    public long getTime() { return time; }
+
+    public String getState() { return state; }
+    public boolean isInProgress() { return inProgress; }
+    public String getMode() { return mode; }
+    public int getRound() { return round; }
+    public List<String> getPlayers() { return players; }
+
+    /* Null when no game is in progress. */
+    public String getCurrentPlayer() { return current; }
+
+    /* Players on a jump platform or in the air, one per lane in use. */
+    public List<String> getJumping() { return jumping; }
+
+    public int getContenders() { return contenders; }
+    public List<String> getCouldReturn() { return couldReturn; }
+    public int getJumps() { return jumps; }
+    public int getWaterLeft() { return waterLeft; }
+
+    /* The players' names, reusing prev if it already has exactly those.
+     */
+    private static List<String> names(List<String> prev, List<Player> ps) {
+        if (prev.size() == ps.size()) {
+            boolean same = true;
+            for (int i = 0; i < ps.size() && same; i++) {
+                same = ps.get(i).getName().equals(prev.get(i));
+            }
+            if (same) {
+                return prev;
+            }
+        }
+        if (ps.size() == 0) {
+            return NO_NAMES;
+        }
+        List<String> result = new ArrayList<String>(ps.size());
+        for (Player p : ps) {
+            result.add(p.getName());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+}
@@ -0,0 +1,215 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import org.bukkit.plugin.Plugin;
+
+/* The last few hundred things that happened to the game: state and
+ * mode changes, who the current player is, and timeouts firing, each
+ * with the tick it happened on. Kept so that when the game ends up
+ * somewhere it shouldn't, there is a history to look at.
+ *
+ * Always on, so recording has to be cheap. Entries live in parallel
+ * arrays that are allocated once and overwritten in a ring; a record
+ * only stores references to enum constants and player names that
+ * already exist. Bukkit doesn't tell plugins the tick number, so the
+ * tracer counts ticks itself from when the plugin was enabled.
+ */
+public class GameTracer {
+
+    public enum Kind {
+        GAME_STATE,
+        JUMPER_STATE,
+        TURN_STATE,
+        TURN_MODE,
+        CURRENT_PLAYER,
+        TIMEOUT,
+        UNEXPECTED,
+    }
+
+    public enum Timeout {
+        START,
+        JUMP,
+        HARD_JUMP,
+        EXIT_POOL,
+    }
+
+    public interface DumpCallback {
+        /* Runs on the thread that wrote the file. f is null if it
+         * couldn't be written.
+         */
+        void done(File f);
+    }
+
+    private static int SIZE = 512;
+
+    // Automatic dumps are limited to one per this many ticks, in case
+    // something goes wrong over and over.
+    private static int AUTO_DUMP_TICKS = 1200;
+
+    private Plugin plugin;
+    private Platform platform;
+    private Platform.Task tickTask;
+    private volatile long tick;
+    private long lastAutoDump;
+
+    private long[] ticks;
+    private Kind[] kinds;
+    private Enum<?>[] froms;
+    private Enum<?>[] tos;
+    private String[] names;
+    private long count;
+
+    public GameTracer(Plugin plugin, Platform platform) {
+        this.plugin = plugin;
+        this.platform = platform;
+        ticks = new long[SIZE];
+        kinds = new Kind[SIZE];
+        froms = new Enum<?>[SIZE];
+        tos = new Enum<?>[SIZE];
+        names = new String[SIZE];
+        lastAutoDump = -AUTO_DUMP_TICKS;
+    }
+
+    public void start() {
+        tickTask = platform.runTimer(null, new Runnable() {
+            public void run() {
+                tick += 1;
+            }
+        }, 1, 1);
+    }
+
+    public void stop() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /* Any of from, to and name may be null. */
+    public synchronized void record(Kind kind, Enum<?> from, Enum<?> to, String name) {
+        int i = (int) (count % SIZE);
+        ticks[i] = tick;
+        kinds[i] = kind;
+        froms[i] = from;
+        tos[i] = to;
+        names[i] = name;
+        count += 1;
+    }
+
+    /* Something happened that shouldn't have. Records it, and writes
+     * the trace to a file unless one was written very recently.
+     */
+    public void unexpected(final Enum<?> state, final String where) {
+        record(Kind.UNEXPECTED, null, state, where);
+        synchronized (this) {
+            if (tick - lastAutoDump < AUTO_DUMP_TICKS) {
+                return;
+            }
+            lastAutoDump = tick;
+        }
+        dump(new DumpCallback() {
+            public void done(File f) {
+                if (f != null) {
+                    plugin.getLogger().warning("Unexpected " + state + " in " + where
+                                               + "; game trace written to " + f.getPath());
+                }
+            }
+        });
+    }
+
+    /* Write the trace, oldest entry first, to a new file in the plugin's
+     * folder. The trace is taken now; the file is written on another
+     * thread, which then calls cb.
+     */
+    public void dump(final DumpCallback cb) {
+        final Date now = new Date();
+        final String header = "# " + now + ", tick " + tick;
+        final String[] lines = lines();
+        final String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(now);
+        new Thread(new Runnable() {
+            public void run() {
+                cb.done(write(stamp, header, lines));
+            }
+        }, "JumpGame-trace").start();
+    }
+
+    private File write(String stamp, String header, String[] lines) {
+        try {
+            plugin.getDataFolder().mkdirs();
+            // Never overwrite an earlier trace, even one from the same
+            // millisecond.
+            File f = new File(plugin.getDataFolder(), "trace-" + stamp + ".txt");
+            for (int n = 2; !f.createNewFile(); n++) {
+                f = new File(plugin.getDataFolder(), "trace-" + stamp + "-" + n + ".txt");
+            }
+            PrintWriter out = new PrintWriter(new FileWriter(f));
+            try {
+                out.println(header);
+                for (String line : lines) {
+                    out.println(line);
+                }
+            } finally {
+                out.close();
+            }
+            return f;
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write game trace: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized String[] lines() {
+        int n = (int) Math.min(count, SIZE);
+        String[] result = new String[n];
+        for (int k = 0; k < n; k++) {
+            int i = (int) ((count - n + k) % SIZE);
+            StringBuilder sb = new StringBuilder();
+            sb.append(ticks[i]);
+            sb.append(' ');
+            sb.append(kinds[i]);
+            if (froms[i] != null) {
+                sb.append(' ');
+                sb.append(froms[i]);
+                sb.append(" ->");
+            }
+            if (tos[i] != null) {
+                sb.append(' ');
+                sb.append(tos[i]);
+            }
+            if (names[i] != null) {
+                sb.append(' ');
+                sb.append(names[i]);
+            }
+            result[k] = sb.toString();
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,58 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import org.bukkit.command.CommandSender;
+
+/* One /jump subcommand. It needs the permission jumpgame.<name>, and
+ * can also be run by its old stand-alone name (like /jumpAddPlayer).
+ */
+public abstract class JumpCommand {
+
+    /* What the arguments are, for tab completion. */
+    public enum Args {
+        NONE,
+        PLAYERS,
+    }
+
+    private String name;
+    private String oldName;
+    private String usage;
+    private Args args;
+
+    public JumpCommand(String name, String oldName, String usage, Args args) {
+        this.name = name;
+        this.oldName = oldName;
+        this.usage = usage;
+        this.args = args;
+    }
+
+    public String getName() { return name; }
+    public String getOldName() { return oldName; }
+    public String getUsage() { return usage; }
+    public Args getArgs() { return args; }
+
+    public String getPermission() {
+        return "jumpgame." + name;
+    }
+
+    /* Returns false if the arguments were wrong, to show the usage. */
+    public abstract boolean run(CommandSender sender, String[] args);
+
+}
@@ -20,17 +20,29 @@ package net.glouser.jumpgameplugin;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import net.glouser.jumpgameplugin.event.JumpEliminationEvent;
+import net.glouser.jumpgameplugin.event.JumpGameStartEvent;
+import net.glouser.jumpgameplugin.event.JumpMissEvent;
+import net.glouser.jumpgameplugin.event.JumpRoundsModeEvent;
+import net.glouser.jumpgameplugin.event.JumpSplashdownEvent;
+import net.glouser.jumpgameplugin.event.JumpTurnStartEvent;
+import net.glouser.jumpgameplugin.event.JumpWinEvent;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitTask;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.plugin.PluginManager;
 
 public class JumpGame implements Listener {
 
@@ -40,7 +52,8 @@ public class JumpGame implements Listener {
         FAILED_STARTING,
         FAILED_NO_JUMP_TP,
         FAILED_NO_POOL,
-        FAILED_NO_PLAYERS
+        FAILED_NO_PLAYERS,
+        FAILED_RESTORING
     }
 
     private enum JumpState {
@@ -48,6 +61,32 @@ public class JumpGame implements Listener {
         STARTING,
         JUMPING,
         EXIT_POOL,
+        DONE,
+    }
+
+    /* One player's turn. With more than one jump platform, several
+     * players can be taking their turns at once, each on their own
+     * platform. The game as a whole is JUMPING while any turn is under
+     * way; each jumper goes JUMPING -> (EXIT_POOL ->) DONE.
+     */
+    private static class Jumper {
+        Player player;
+        JumpPlatform lane;
+        JumpState state;
+        boolean success;
+        boolean eliminationSaid;
+        Location splashdown;
+        Platform.Task timeoutTask;
+        long timeoutEnds;
+        long arrived;
+        long splashedAt;
+        Trajectory path;
+
+        Jumper(Player player, JumpPlatform lane) {
+            this.player = player;
+            this.lane = lane;
+            state = JumpState.JUMPING;
+        }
     }
 
     private static ChatColor C_PLAIN = ChatColor.WHITE;
@@ -58,33 +97,109 @@ public class JumpGame implements Listener {
 
     private static int TICKS_PER_SECOND = 20; // approximate
 
+    private static int SNAPSHOT_HISTORY = 64;
+
     private Plugin plugin;
+    private Platform platform;
     private JumpPool pool;
+    private ArenaChunks arenaChunks;
+    private ArenaAudience audience;
+    private GameTracer tracer;
+    private TickWatchdog watchdog;
+    private ArenaRestorer restorer;
+    private JumpTelemetry telemetry;
+    private ReplayRecorder replays;
+    private boolean recordReplays;
+    private TeleportScheduler teleports;
+    private JumpHud hud;
     private TurnTracker players;
 
     private JumpState jumpState;
+    private int turnNum;
     private int jumpCount;
-    private Location splashdown;
+    private ArrayList<Jumper> heat;
+    private volatile Player[] heatPlayers;
+    private volatile Location[] heatSpots;
+    private volatile GameSnapshot snapshot;
+    private boolean snapshotStale;
+    private AtomicReferenceArray<GameSnapshot> snapshots;
     private ArrayList<Block> splashdownBlocks;
 
     private Location jumpTP;
+    private ArrayList<JumpPlatform> platforms;
+    private ArrayList<JumpPlatform> lanes;
     private Location waitTP;
     private int jumpTimeoutTicks;
     private int jumpHardTimeoutTicks;
     private int exitPoolTimeoutTicks;
     private int startDelaySecs;
-    private BukkitTask timeoutTask;
-
-    public JumpGame(Plugin plugin, JumpPool pool) {
+    private int heatSize;
+    private double heatSpacing;
+    private boolean sweptSplashdown;
+    private boolean hudEnabled;
+    private boolean hudPending;
+    private Runnable hudRefresh;
+    private Platform.Task timeoutTask;
+    private Platform.Task hudTask;
+    private Platform.Task poolResetTask;
+    private Platform.Task poolCheckTask;
+    private boolean autoRestart;
+    private int maxPlayers;
+    private int poolResetPerTick;
+    private int poolCheckPerTick;
+    private int poolChecked;
+    private int poolWrong;
+    private boolean poolRecheck;
+    private boolean listening;
+
+    public JumpGame(Plugin plugin, JumpPool pool, ArenaChunks arenaChunks,
+                    Platform platform) {
         this.plugin = plugin;
+        this.platform = platform;
         this.pool = pool;
-        players = new TurnTracker(plugin);
+        this.arenaChunks = arenaChunks;
+        teleports = new TeleportScheduler(platform);
+        restorer = new ArenaRestorer(platform);
+        telemetry = new JumpTelemetry();
+        replays = new ReplayRecorder(plugin, platform);
+        hud = new JumpHud(plugin);
+        audience = new ArenaAudience();
+        tracer = new GameTracer(plugin, platform);
+        tracer.start();
+        watchdog = new TickWatchdog(platform);
+        hudRefresh = new Runnable() {
+            public void run() {
+                hudPending = false;
+                refreshHud();
+            }
+        };
+        players = new TurnTracker(plugin, tracer);
         jumpState = JumpState.NO_GAME;
+        heat = new ArrayList<Jumper>();
+        heatPlayers = new Player[0];
+        heatSpots = new Location[0];
+        heatSize = 1;
+        platforms = new ArrayList<JumpPlatform>();
+        lanes = new ArrayList<JumpPlatform>();
         splashdownBlocks = new ArrayList<Block>();
+        snapshot = new GameSnapshot();
+        snapshots = new AtomicReferenceArray<GameSnapshot>(SNAPSHOT_HISTORY);
     }
 
     public void disable() {
         cancelTimeout();
+        cancelPoolReset();
+        cancelPoolCheck();
+        restorer.cancel();
+        replays.close();
+        clearHeat();
+        cancelHudTask();
+        hud.disable();
+        teleports.clear();
+        arenaChunks.release();
+        stopListening();
+        tracer.stop();
+        watchdog.stop();
     }
 
     public boolean gameInProgress() {
@@ -96,16 +211,100 @@ public class JumpGame implements Listener {
         return players.isPlaying(p);
     }
 
+    /* True if p is taking their turn right now. With several jump
+     * platforms, there can be more than one such player. Safe to call
+     * from any thread.
+     */
     public boolean isCurrentPlayer(Player p) {
-        return p == players.getCurrentPlayer();
+        for (Player hp : heatPlayers) {
+            if (hp == p) { return true; }
+        }
+        return false;
+    }
+
+    /* The platform p is jumping from, or null if p isn't taking their
+     * turn right now. Safe to call from any thread.
+     */
+    public Location getJumpSpot(Player p) {
+        Player[] ps = heatPlayers;
+        Location[] spots = heatSpots;
+        for (int i = 0; i < ps.length && i < spots.length; i++) {
+            if (ps[i] == p) { return spots[i]; }
+        }
+        return null;
+    }
+
+    /* The game's state and timers belong to the thread that owns the
+     * jump platform (see Platform). On ordinary servers that is just
+     * the main thread.
+     */
+    public boolean isGameThread() {
+        return platform.isOwnedByCurrentThread(jumpTP);
+    }
+
+    /* Run something that touches game state on the game's thread.
+     */
+    public void execute(Runnable r) {
+        platform.execute(jumpTP, r);
+    }
+
+    /* Run something on the game's thread after a delay. Can be called
+     * from any thread.
+     */
+    public Platform.Task runLater(Runnable r, long delayTicks) {
+        return platform.runLater(jumpTP, r, delayTicks);
     }
 
     public void setJumpTP(Location loc) {
         jumpTP = loc;
+        teleports.setHome(loc);
+        buildLanes();
+        audience.setArena(arenaLocations(), pool);
+        // The check and the watchdog run on the jump platform's thread.
+        startPoolCheck();
+        // Restarting drops anything queued, including a HUD refresh.
+        watchdog.start(loc);
+        hudPending = false;
+    }
+
+    /* Extra jump platforms besides the main one at jumpTP.
+     */
+    public void setPlatforms(List<JumpPlatform> ps) {
+        platforms.clear();
+        platforms.addAll(ps);
+        buildLanes();
+        audience.setArena(arenaLocations(), pool);
+    }
+
+    /* All platforms in use, main one first.
+     */
+    public List<JumpPlatform> getLanes() {
+        return lanes;
     }
 
     public void setWaitTP(Location loc) {
         waitTP = loc;
+        audience.setArena(arenaLocations(), pool);
+    }
+
+    /* Call after the pool has been loaded or rebuilt.
+     */
+    public void poolChanged() {
+        audience.setArena(arenaLocations(), pool);
+    }
+
+    public GameTracer getTracer() {
+        return tracer;
+    }
+
+    public TickWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /* Players near the arena, who see game messages without playing.
+     */
+    public ArenaAudience getAudience() {
+        return audience;
     }
 
     public void setJumpTimeoutTicks(int ticks) {
@@ -124,23 +323,127 @@ public class JumpGame implements Listener {
         startDelaySecs = seconds;
     }
 
+    public void setTeleportsPerTick(int n) {
+        teleports.setTeleportsPerTick(n);
+    }
+
+    /* Number of players who jump at the same time.
+     */
+    public void setHeatSize(int n) {
+        heatSize = Math.max(1, n);
+        buildLanes();
+    }
+
+    /* Distance between the jump spots used by a heat.
+     */
+    public void setHeatSpacing(double blocks) {
+        heatSpacing = blocks;
+        buildLanes();
+    }
+
+    public void setRestoreBudget(int checksPerTick, int changesPerTick) {
+        restorer.setBudget(checksPerTick, changesPerTick);
+    }
+
+    /* Put the arena back the way the snapshot has it, a slice per tick.
+     * Not while a game is on; games can't start until it's done.
+     */
+    public boolean restoreArena(ArenaSnapshot s, World w, ArenaRestorer.Callback cb) {
+        if (jumpState != JumpState.NO_GAME || jumpTP == null) {
+            return false;
+        }
+        restorer.start(s, w, jumpTP, cb);
+        return true;
+    }
+
+    public boolean isRestoring() {
+        return restorer.isRunning();
+    }
+
+    public JumpTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    public ReplayRecorder getReplays() {
+        return replays;
+    }
+
+    /* Record each jumper's path from the platform to the water.
+     */
+    public void setRecordReplays(boolean record) {
+        recordReplays = record;
+    }
+
+    /* Play back a recorded jump, moving the marker on the game's thread.
+     */
+    public boolean playReplay(ReplayRecorder.Recording r) {
+        return jumpTP != null && replays.play(r, jumpTP);
+    }
+
+    /* Most players that can join one game. 0 means no limit.
+     */
+    public void setMaxPlayers(int n) {
+        maxPlayers = Math.max(0, n);
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    /* Continuous mode: when a game ends, the same players go again.
+     */
+    public void setAutoRestart(boolean auto) {
+        autoRestart = auto;
+    }
+
+    public void setPoolResetPerTick(int n) {
+        poolResetPerTick = Math.max(1, n);
+    }
+
+    /* Check this many pool blocks against the world every tick, with
+     * or without a game. 0 turns the check off.
+     */
+    public void setPoolCheckPerTick(int n) {
+        poolCheckPerTick = Math.max(0, n);
+        startPoolCheck();
+    }
+
+    public void setSweptSplashdown(boolean swept) {
+        sweptSplashdown = swept;
+    }
+
+    public void setHudEnabled(boolean enabled) {
+        hudEnabled = enabled;
+    }
+
     public TurnTracker.AddResult addPlayer(Player p) {
+        if (maxPlayers > 0 && players.getPlayers().size() >= maxPlayers
+              && !players.isPlaying(p)) {
+            return TurnTracker.AddResult.FAILED_FULL;
+        }
         TurnTracker.AddResult res = players.addPlayer(p);
         if (res == TurnTracker.AddResult.SUCCESS) {
             plugin.getLogger().info("Added " + p.getName());
             broadcast(C_PLAYER + p.getName() + C_PLAIN + " joined the jump game");
+            changed();
+            publishSnapshot();
         }
         return res;
     }
 
     public TurnTracker.RemoveResult removePlayer(Player p) {
-        if (p == players.getCurrentPlayer()) {
-            cancelTimeout();
-
-            // If removing the current player and they have already
-            // jumped into the water, go ahead and fill in the block.
-            if (jumpState == JumpState.EXIT_POOL) {
-                fillSplashdownBlock();
+        Jumper j = findJumper(p);
+        if (j != null) {
+            cancelTimeout(j);
+            dropPath(j);
+            heat.remove(j);
+            updateHeatPlayers();
+
+            // If removing a jumper who has already jumped into the
+            // water, go ahead and fill in the block.
+            if (j.state == JumpState.EXIT_POOL
+                  || (j.state == JumpState.DONE && j.success)) {
+                fillSplashdownBlock(j.splashdown.getBlock());
             }
         }
 
@@ -149,10 +452,15 @@ public class JumpGame implements Listener {
             plugin.getLogger().info("Removed " + p.getName() + " - " + res);
             broadcast("Removed " + C_PLAYER + p.getName() + C_PLAIN + " from the jump game");
             p.sendMessage(MSG_PREFIX + "You were removed from the jump game");
+            hud.hide(p);
+            changed();
         }
         switch (res) {
             case SUCCESS_NEW_CURRENT_PLAYER:
-                update();
+                // Other jumpers in the heat carry on.
+                if (heat.size() == 0) {
+                    update();
+                }
                 break;
             case SUCCESS_NEW_STATE:
                 switch (players.getState()) {
@@ -160,7 +468,8 @@ public class JumpGame implements Listener {
                         broadcast("As the last player remaining in the game, "
                             + C_PLAYER + players.getCurrentPlayer().getName()
                             + C_PLAIN + " wins by default");
-                        gameOver();
+                        fireWin();
+                        finishGame();
                         break;
                     case GAME_POINT:
                         broadcast(C_PLAYER + players.getCurrentPlayer().getName()
@@ -169,6 +478,11 @@ public class JumpGame implements Listener {
                 }
                 break;
         }
+        if (j != null && gameInProgress()) {
+            resolveHeat();
+        }
+        updateHud();
+        publishSnapshot();
         return res;
     }
 
@@ -176,14 +490,82 @@ public class JumpGame implements Listener {
         return players.getPlayers();
     }
 
+    public String getStateName() {
+        return jumpState.toString();
+    }
+
+    public Player getCurrentPlayer() {
+        return players.getCurrentPlayer();
+    }
+
+    public TurnTracker.Mode getMode() {
+        return players.getMode();
+    }
+
+    public int getRoundNum() {
+        return players.getRoundNum();
+    }
+
+    public int numActivePlayers() {
+        return players.numActivePlayers();
+    }
+
+    public List<Player> getProvisionalOut() {
+        return players.getProvisionalOut();
+    }
+
+    public int getWaterLeft() {
+        return pool.waterLeft();
+    }
+
+    /* The latest snapshot of the game. Safe to call from any thread.
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /* Up to max of the most recent snapshots, newest first. Safe to
+     * call from any thread.
+     */
+    public List<GameSnapshot> getSnapshotHistory(int max) {
+        List<GameSnapshot> result = new ArrayList<GameSnapshot>();
+        long v = snapshot.getVersion();
+        for (int k = 0; k < max && k < SNAPSHOT_HISTORY && v - k > 0; k++) {
+            GameSnapshot s = snapshots.get((int) ((v - k) % SNAPSHOT_HISTORY));
+            if (s == null || s.getVersion() != v - k) {
+                // Replaced by a newer one while we were looking.
+                break;
+            }
+            result.add(s);
+        }
+        return result;
+    }
+
+    public int getJumpCount() {
+        return jumpCount;
+    }
+
     public void reset() {
         plugin.getLogger().info("Resetting");
         broadcast("The jump game has been reset");
         gameOver();
+        cancelPoolReset();
         pool.reset();
+        // Check the whole pool once more, from the start of a pass.
+        poolRecheck = true;
+        poolChecked = 0;
+        poolWrong = 0;
+        changed();
+        publishSnapshot();
     }
 
     public StartResult start() {
+        StartResult result = startCountdown();
+        publishSnapshot();
+        return result;
+    }
+
+    private StartResult startCountdown() {
         if (jumpState == JumpState.STARTING) {
             return StartResult.FAILED_STARTING;
         } else if (jumpState != JumpState.NO_GAME) {
@@ -193,7 +575,8 @@ public class JumpGame implements Listener {
         if (result != StartResult.SUCCESS) {
             return result;
         }
-        jumpState = JumpState.STARTING;
+        setState(JumpState.STARTING);
+        startListening();
         setStartGameTimeout();
         announce("The jump game starts in " + (startDelaySecs + 3) + " seconds");
         return StartResult.SUCCESS;
@@ -202,6 +585,7 @@ public class JumpGame implements Listener {
     private void startForReal() {
         if (jumpState != JumpState.STARTING) {
             plugin.getLogger().info("Game start failed. Unexpected state: " + jumpState);
+            tracer.unexpected(jumpState, "JumpGame.startForReal");
             broadcast("Jump game unable to start");
             return;
         }
@@ -209,24 +593,36 @@ public class JumpGame implements Listener {
         if (result != StartResult.SUCCESS) {
             plugin.getLogger().info("Game start failed: " + result);
             broadcast("Jump game unable to start");
-            jumpState = JumpState.NO_GAME;
+            setState(JumpState.NO_GAME);
+            arenaChunks.release();
+            stopListening();
             return;
         }
         plugin.getLogger().info("Starting game");
+        changed();
         jumpCount = 0;
+        turnNum = 0;
+        // Finishes off a reset left over from the last game, if any.
+        cancelPoolReset();
         pool.reset();
         splashdownBlocks.clear();
         players.setMode(TurnTracker.Mode.CONTINUOUS);
         players.start();
+        if (hasListeners(JumpGameStartEvent.getHandlerList())) {
+            callEvent(new JumpGameStartEvent(players.getPlayers()));
+        }
         startMsg();
-        nextJumper();
+        fillLanes();
         moveAllWaiters();
+        startHud();
     }
 
     private StartResult startCheck() {
-        if (jumpTP == null) {
+        if (restorer.isRunning()) {
+            return StartResult.FAILED_RESTORING;
+        } else if (jumpTP == null) {
             return StartResult.FAILED_NO_JUMP_TP;
-        } else if (pool.size() == 0) {
+        } else if (pool.size() == 0 || pool.getWorld() == null) {
             return StartResult.FAILED_NO_POOL;
         } else if (players.getPlayers().size() == 0) {
             return StartResult.FAILED_NO_PLAYERS;
@@ -237,91 +633,280 @@ public class JumpGame implements Listener {
     @EventHandler
     public void onPlayerDeath(PlayerDeathEvent event) {
         if (!gameInProgress()) { return; }
-        Player p = event.getEntity();
-        if (p != players.getCurrentPlayer()) { return; }
-        cancelTimeout();
-        switch (jumpState) {
+        final Player p = event.getEntity();
+        if (!isCurrentPlayer(p)) { return; }
+        if (isGameThread()) {
+            long began = watchdog.begin();
+            playerDied(p);
+            publishSnapshot();
+            watchdog.end(began);
+        } else {
+            // Region-threaded server, and the jumper is outside the
+            // arena's region.
+            execute(new Runnable() {
+                public void run() {
+                    long began = watchdog.begin();
+                    playerDied(p);
+                    publishSnapshot();
+                    watchdog.end(began);
+                }
+            });
+        }
+    }
+
+    private void playerDied(Player p) {
+        Jumper j = findJumper(p);
+        if (!gameInProgress() || j == null) { return; }
+        cancelTimeout(j);
+        switch (j.state) {
 
             case JUMPING:
-                endTurnFailure();
+                recordPlatformTime(j);
+                finishPath(j, false);
+                jumperDone(j, false);
                 break;
 
             case EXIT_POOL:
-                endTurnSuccess();
+                jumperDone(j, true);
                 break;
         }
     }
 
+    /* Jumpers who die respawn on their platform. */
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        Location spot = getJumpSpot(event.getPlayer());
+        if (spot != null) {
+            event.setRespawnLocation(spot);
+        }
+    }
+
     @EventHandler
     public void onPlayerMove(PlayerMoveEvent event) {
         if (!gameInProgress()) { return; }
-        Player p = event.getPlayer();
-        Location movedTo = event.getTo();
-        if (p != players.getCurrentPlayer()) return;
-        boolean movedToPool = pool.isPoolWater(movedTo.getBlock());
-        switch (jumpState) {
+        final Player p = event.getPlayer();
+        if (!isCurrentPlayer(p)) return;
+        if (isGameThread()) {
+            long began = watchdog.begin();
+            playerMoved(p, event.getFrom(), event.getTo());
+            publishSnapshot();
+            watchdog.end(began);
+        } else {
+            final Location from = event.getFrom().clone();
+            final Location to = event.getTo().clone();
+            execute(new Runnable() {
+                public void run() {
+                    long began = watchdog.begin();
+                    playerMoved(p, from, to);
+                    publishSnapshot();
+                    watchdog.end(began);
+                }
+            });
+        }
+    }
+
+    private void playerMoved(Player p, Location movedFrom, Location movedTo) {
+        Jumper j = findJumper(p);
+        if (!gameInProgress() || j == null) { return; }
+        switch (j.state) {
 
             case JUMPING:
-                if (movedToPool) {
+                if (j.path != null) {
+                    j.path.add(System.currentTimeMillis(), movedTo);
+                }
+                Block splashBlock = findSplashdown(movedFrom, movedTo);
+                if (splashBlock != null
+                      && hasListeners(JumpSplashdownEvent.getHandlerList())) {
+                    JumpSplashdownEvent e = new JumpSplashdownEvent(p, splashBlock);
+                    callEvent(e);
+                    if (e.isCancelled()) {
+                        splashBlock = null;
+                    }
+                }
+                if (splashBlock != null) {
                     jumpCount += 1;
-                    splashdown = movedTo;
+                    changed();
+                    j.splashdown = splashBlock.getLocation().add(0.5, 0, 0.5);
+                    j.splashedAt = System.currentTimeMillis();
+                    recordPlatformTime(j);
+                    finishPath(j, true);
+                    cancelTimeout(j);
                     if (players.getState() == TurnTracker.State.GAME_POINT) {
+                        // There is only ever one jumper at game point.
+                        j.lane.countSplashdown();
+                        clearHeat();
                         players.endTurnSuccess();
                         update();
                     } else {
                         broadcast("Splashdown! Good jump by "
                             + C_PLAYER + p.getName());
-                        eliminationMsg();
+                        // Jumpers still ahead in the order could yet
+                        // change who is out, so only the first jumper
+                        // in line can announce it now.
+                        if (j == heat.get(0)) {
+                            eliminationMsg();
+                            j.eliminationSaid = true;
+                        }
                         p.sendMessage(MSG_PREFIX + "Please exit the pool.");
-                        cancelTimeout();
-                        setExitPoolTimeout();
-                        jumpState = JumpState.EXIT_POOL;
+                        setExitPoolTimeout(j);
+                        setState(j, JumpState.EXIT_POOL);
+                        j.lane.countSplashdown();
+                        // The platform is free while this jumper
+                        // climbs out.
+                        fillLanes();
+                        updateHud();
                     }
                 }
                 break;
 
             case EXIT_POOL:
-                if (!movedToPool) {
-                    cancelTimeout();
+                if (!pool.isPoolWater(movedTo.getBlock())) {
+                    cancelTimeout(j);
+                    telemetry.exitTime(System.currentTimeMillis() - j.splashedAt);
                     if (waitTP != null && players.getPlayers().size() > 1) {
                         // Not single-player. Send last jumper to waiting area.
-                        p.teleport(waitTP);
+                        teleports.teleport(p, waitTP, null);
                     }
-                    endTurnSuccess();
+                    jumperDone(j, true);
                 }
                 break;
         }
     }
 
-    public void forceEndTurn() {
+    /* Find the pool water block a jumper landed in, if any.
+     * When the server is lagging, move events get coalesced and a fast
+     * fall can skip over the water entirely, so by default the whole
+     * path from the last position is swept, not just the end point.
+     */
+    private Block findSplashdown(Location from, Location to) {
+        if (sweptSplashdown) {
+            return pool.findPoolWater(from, to);
+        }
+        Block b = to.getBlock();
+        return pool.isPoolWater(b) ? b : null;
+    }
+
+    private void forceEndTurn(final Jumper j) {
+        cancelTimeout(j);
+        telemetry.forcedExit();
         Location dest;
         if (waitTP != null) {
             dest = waitTP;
         } else {
-            dest = splashdown.clone();
+            dest = j.splashdown.clone();
             dest.add(0, 2, 0);
         }
-        players.getCurrentPlayer().teleport(dest);
-        endTurnSuccess();
+        // The splashdown block gets filled when the turn ends, so the
+        // jumper has to be out of the pool first.
+        teleports.teleportFirst(j.player, dest,
+            new TeleportScheduler.Callback() {
+                public void done() {
+                    if (heat.contains(j) && j.state == JumpState.EXIT_POOL) {
+                        jumperDone(j, true);
+                        publishSnapshot();
+                    }
+                }
+            });
+    }
+
+    /* Time from arriving on the platform to leaving it, either by
+     * splashing down or dying.
+     */
+    private void recordPlatformTime(Jumper j) {
+        if (j.arrived != 0) {
+            telemetry.platformTime(System.currentTimeMillis() - j.arrived);
+        }
+    }
+
+    private void finishPath(Jumper j, boolean splashdown) {
+        if (j.path != null) {
+            replays.finish(j.player, j.path, splashdown);
+            j.path = null;
+        }
+    }
+
+    private void dropPath(Jumper j) {
+        if (j.path != null) {
+            replays.discard(j.path);
+            j.path = null;
+        }
     }
 
-    private void endTurnSuccess() {
-        players.endTurnSuccess();
-        fillSplashdownBlock();
-        update();
+    private void jumperDone(Jumper j, boolean success) {
+        setState(j, JumpState.DONE);
+        j.success = success;
+        if (!success) {
+            j.lane.countMiss();
+        }
+        resolveHeat();
+    }
+
+    /* Apply the results of finished turns to the turn tracker in
+     * jumping order, exactly as if the jumpers had gone one at a time.
+     * Turns are handed out from the front of the jumping order, so the
+     * first jumper in flight is always the tracker's current player. A
+     * finished turn waits for the ones ahead of it to finish too.
+     */
+    private void resolveHeat() {
+        boolean resolved = false;
+        while (heat.size() > 0 && heat.get(0).state == JumpState.DONE
+                && !isGameEnd(players.getState())) {
+            Jumper j = heat.remove(0);
+            if (j.player != players.getCurrentPlayer()) {
+                // Shouldn't happen. The heat's results can't be
+                // applied in order, so they are dropped, and the
+                // heat's jumpers go again when their turns come up.
+                plugin.getLogger().warning("Jumpers out of step with TurnTracker at "
+                    + j.player.getName() + "; dropping " + heat.size()
+                    + " other turn(s) in progress");
+                tracer.unexpected(players.getState(), "JumpGame.resolveHeat");
+                clearHeat();
+                break;
+            }
+            if (j.success) {
+                if (!j.eliminationSaid) {
+                    eliminationMsg();
+                }
+                players.endTurnSuccess();
+                // Jumpers can land in a block someone else is still
+                // climbing out of. Both jumps count; the block is only
+                // filled once.
+                fillSplashdownBlock(j.splashdown.getBlock());
+            } else {
+                endTurnFailure();
+            }
+            resolved = true;
+        }
+        updateHeatPlayers();
+        if (resolved) {
+            update();
+        } else {
+            // A platform may have come free.
+            fillLanes();
+            updateHud();
+        }
     }
 
     private void endTurnFailure() {
         Player deadPlayer = players.getCurrentPlayer();
+        if (hasListeners(JumpMissEvent.getHandlerList())) {
+            callEvent(new JumpMissEvent(deadPlayer));
+        }
         players.endTurnFailure();
         if (players.getState() == TurnTracker.State.READY) {
             broadcast(C_PLAYER + deadPlayer.getName()
                 + C_PLAIN + " will be eliminated if another player survives their jump");
         }
-        update();
+    }
+
+    private static boolean isGameEnd(TurnTracker.State state) {
+        return state == TurnTracker.State.STOPPED
+            || state == TurnTracker.State.WINNER
+            || state == TurnTracker.State.SP_GAME_OVER;
     }
 
     private void update() {
+        fireEliminations();
         switch (players.getState()) {
             case STOPPED:
                 plugin.getLogger().info("Game halted");
@@ -330,15 +915,19 @@ public class JumpGame implements Listener {
                 break;
 
             case READY:
-                readyMsg();
-                nextJumper();
+                // With several platforms, the next jumper may be on
+                // their way already; they were announced then.
+                if (findJumper(players.getCurrentPlayer()) == null) {
+                    readyMsg();
+                }
+                fillLanes();
                 break;
 
             case GAME_POINT:
                 broadcast("To win the game, "
                     + C_PLAYER + players.getCurrentPlayer().getName()
                     + C_PLAIN + ", prove your worth!");
-                nextJumper();
+                fillLanes();
                 break;
 
             case SECOND_CHANCE:
@@ -346,7 +935,7 @@ public class JumpGame implements Listener {
                     + C_NUMBER + players.numActivePlayers()
                     + C_PLAIN + " get another chance, starting with "
                     + C_PLAYER + players.getCurrentPlayer().getName());
-                nextJumper();
+                fillLanes();
                 break;
 
             case WINNER:
@@ -355,18 +944,19 @@ public class JumpGame implements Listener {
                 broadcast("There were "
                     + C_NUMBER + jumpCount
                     + C_PLAIN + " successful jumps in all.");
-                gameOver();
+                fireWin();
+                finishGame();
                 break;
 
             case SP_READY:
-                broadcast("You are cleared to jump");
-                nextJumper();
+                tell("You are cleared to jump");
+                fillLanes();
                 break;
 
             case SP_GAME_OVER:
-                broadcast("Game over! You made " + C_NUMBER + jumpCount
+                tell("Game over! You made " + C_NUMBER + jumpCount
                     + C_PLAIN + " successful jumps.");
-                gameOver();
+                finishGame();
                 break;
 
             case NEW_ROUND:
@@ -376,7 +966,7 @@ public class JumpGame implements Listener {
                     + C_PLAIN + "contenders remain.! Now jumping: "
                     + C_PLAYER + players.getCurrentPlayer().getName());
                 fillSavedBlocks();
-                nextJumper();
+                fillLanes();
                 break;
 
             case SECOND_CHANCE_ROUND:
@@ -388,40 +978,367 @@ public class JumpGame implements Listener {
                 broadcast("Round " + C_NUMBER + players.getRoundNum()
                     + C_PLAIN + ", starting with: "
                     + C_PLAYER + players.getCurrentPlayer().getName());
-                nextJumper();
+                fillLanes();
                 break;
 
             default:
                 plugin.getLogger().info("Unexpected TurnTracker.State: " + players.getState());
+                tracer.unexpected(players.getState(), "JumpGame.update");
+                break;
+        }
+        changed();
+        updateHud();
+    }
+
+    /* Send players to free jump platforms in jumping order. Everyone
+     * already in flight is at the front of the order, so the next ones
+     * to go are the ones right behind them. A platform is free once its
+     * jumper has splashed down, so the next turn can start while the
+     * last jumper is still climbing out of the pool.
+     */
+    private void fillLanes() {
+        setState(JumpState.JUMPING);
+        List<Player> order = new ArrayList<Player>();
+        order.add(players.getCurrentPlayer());
+        order.addAll(players.getNextPlayers());
+        List<Jumper> sent = new ArrayList<Jumper>();
+        for (int i = heat.size(); i < order.size(); i++) {
+            JumpPlatform lane = freeLane();
+            if (lane == null || findJumper(order.get(i)) != null) {
                 break;
+            }
+            Jumper j = new Jumper(order.get(i), lane);
+            heat.add(j);
+            sent.add(j);
+        }
+        if (sent.size() == 0) {
+            return;
+        }
+        updateHeatPlayers();
+
+        List<Jumper> toPlatform = new ArrayList<Jumper>();
+        for (Jumper j : sent) {
+            turnNum += 1;
+            j.lane.countTurn();
+            if (lanes.size() > 1) {
+                broadcast("Next up on platform "
+                    + C_NUMBER + (lanes.indexOf(j.lane) + 1)
+                    + C_PLAIN + ": "
+                    + C_PLAYER + j.player.getName());
+            }
+            if (hasListeners(JumpTurnStartEvent.getHandlerList())) {
+                JumpTurnStartEvent e = new JumpTurnStartEvent(j.player, turnNum);
+                callEvent(e);
+                if (e.isCancelled()) {
+                    // Another plugin is placing the jumper itself.
+                    setJumpTimeout(j);
+                    continue;
+                }
+            }
+            toPlatform.add(j);
+        }
+        // Urgent teleports go in the order they are queued, so these
+        // go in jumping order.
+        for (final Jumper j : toPlatform) {
+            // The jump clock starts once the jumper is actually on the platform.
+            teleports.teleportFirst(j.player, j.lane.getLocation(),
+                new TeleportScheduler.Callback() {
+                    public void done() {
+                        if (heat.contains(j) && j.state == JumpState.JUMPING) {
+                            setJumpTimeout(j);
+                        }
+                    }
+                });
+        }
+    }
+
+    private JumpPlatform freeLane() {
+        for (JumpPlatform lane : lanes) {
+            boolean busy = false;
+            for (Jumper j : heat) {
+                if (j.lane == lane && j.state == JumpState.JUMPING) {
+                    busy = true;
+                    break;
+                }
+            }
+            if (!busy) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    /* Everything in the arena besides the pool. May contain nulls.
+     */
+    private List<Location> arenaLocations() {
+        List<Location> arena = new ArrayList<Location>();
+        arena.add(jumpTP);
+        arena.add(waitTP);
+        for (JumpPlatform lane : lanes) {
+            arena.add(lane.getLocation());
+        }
+        return arena;
+    }
+
+    /* The main platform comes first, then any extra platforms. With no
+     * extra platforms, heatSize spots are spaced out sideways from the
+     * main one, alternating left and right.
+     *
+     * Lanes that are still the same platform are kept, so their stats
+     * aren't lost when platforms are added or the config is reloaded.
+     */
+    private void buildLanes() {
+        List<JumpPlatform> old = new ArrayList<JumpPlatform>(lanes);
+        lanes.clear();
+        if (jumpTP == null) {
+            return;
+        }
+        lanes.add(keepLane(old, new JumpPlatform(jumpTP)));
+        if (platforms.size() > 0) {
+            for (JumpPlatform p : platforms) {
+                lanes.add(keepLane(old, p));
+            }
+            return;
+        }
+        double yaw = Math.toRadians(jumpTP.getYaw());
+        for (int i = 1; i < heatSize; i++) {
+            double offset = ((i + 1) / 2) * heatSpacing * ((i % 2 == 1) ? 1 : -1);
+            Location spot = jumpTP.clone();
+            spot.add(Math.cos(yaw) * offset, 0, Math.sin(yaw) * offset);
+            lanes.add(keepLane(old, new JumpPlatform(spot)));
+        }
+    }
+
+    private JumpPlatform keepLane(List<JumpPlatform> old, JumpPlatform p) {
+        for (JumpPlatform lane : old) {
+            if (lane.isSame(p)) {
+                return lane;
+            }
+        }
+        return p;
+    }
+
+    private Jumper findJumper(Player p) {
+        for (Jumper j : heat) {
+            if (j.player == p) {
+                return j;
+            }
+        }
+        return null;
+    }
+
+    private void clearHeat() {
+        for (Jumper j : heat) {
+            cancelTimeout(j);
+            dropPath(j);
+        }
+        heat.clear();
+        updateHeatPlayers();
+    }
+
+    /* Event handlers check heatPlayers before handing off to the game's
+     * thread, so it is replaced rather than modified.
+     */
+    private void updateHeatPlayers() {
+        Player[] ps = new Player[heat.size()];
+        Location[] spots = new Location[heat.size()];
+        for (int i = 0; i < ps.length; i++) {
+            ps[i] = heat.get(i).player;
+            spots[i] = heat.get(i).lane.getLocation();
+        }
+        heatSpots = spots;
+        heatPlayers = ps;
+        changed();
+    }
+
+    /* Note that the game changed. Nothing is published until the
+     * change is complete.
+     */
+    private void changed() {
+        snapshotStale = true;
+    }
+
+    /* Called on the game's thread at the end of whatever changed the
+     * game (a command, an event, a timer), once the change is
+     * complete, so there is one new snapshot per change. Readers on
+     * other threads see either the old snapshot or the new one, never
+     * a mix.
+     */
+    private void publishSnapshot() {
+        if (!snapshotStale) {
+            return;
+        }
+        snapshotStale = false;
+        GameSnapshot s = new GameSnapshot(snapshot, jumpState.toString(), gameInProgress(),
+                                          players, heatPlayers, jumpCount, pool.waterLeft());
+        snapshots.set((int) (s.getVersion() % SNAPSHOT_HISTORY), s);
+        snapshot = s;
+    }
+
+    /* A game that ended on its own (not reset or halted). In continuous
+     * mode the same players go again right away: the jumping order is
+     * shuffled and the countdown starts while the winner is still being
+     * announced, and the pool is put back a slice per tick during the
+     * countdown instead of all at once when the game starts.
+     */
+    private void finishGame() {
+        List<Player> roster = new ArrayList<Player>(players.getPlayers());
+        gameOver();
+        if (!autoRestart) {
+            return;
+        }
+        for (Player p : roster) {
+            if (p.isOnline()) {
+                players.addPlayer(p);
+            }
+        }
+        players.shuffle();
+        if (startCountdown() != StartResult.SUCCESS) {
+            players.reset();
+            return;
+        }
+        pool.beginReset();
+        Runnable r = new Runnable() {
+            public void run() {
+                // Whatever is left is done at once when the game starts.
+                if (watchdog.skip(TickWatchdog.Work.BLOCKS)) {
+                    return;
+                }
+                long began = watchdog.begin();
+                if (pool.resetStep(poolResetPerTick)) {
+                    cancelPoolReset();
+                }
+                watchdog.end(began);
+            }
+        };
+        poolResetTask = platform.runTimer(jumpTP, r, 1, 1);
+    }
+
+    private void startPoolCheck() {
+        cancelPoolCheck();
+        if (poolCheckPerTick == 0 || jumpTP == null) {
+            return;
+        }
+        Runnable r = new Runnable() {
+            public void run() {
+                checkPool();
+            }
+        };
+        poolCheckTask = platform.runTimer(jumpTP, r, 1, 1);
+    }
+
+    private void cancelPoolCheck() {
+        if (poolCheckTask != null) {
+            poolCheckTask.cancel();
+            poolCheckTask = null;
         }
+        poolChecked = 0;
+        poolWrong = 0;
     }
 
-    private void nextJumper() {
-        players.getCurrentPlayer().teleport(jumpTP);
-        setJumpTimeout();
-        jumpState = JumpState.JUMPING;
+    /* One tick's share of the pool check. Anything fixed is logged once
+     * per pass over the whole pool. Between games the pool is left
+     * alone, so admins can work on the arena, except for one pass
+     * after a reset.
+     */
+    private void checkPool() {
+        if (jumpState == JumpState.NO_GAME && !poolRecheck) {
+            return;
+        }
+        if (watchdog.skip(TickWatchdog.Work.BLOCKS)) {
+            return;
+        }
+        long began = watchdog.begin();
+        poolWrong += pool.checkStep(poolCheckPerTick);
+        watchdog.end(began);
+        poolChecked += Math.min(poolCheckPerTick, pool.size());
+        if (poolChecked >= pool.size()) {
+            if (poolWrong > 0) {
+                changed();
+                publishSnapshot();
+                plugin.getLogger().info("Pool check: fixed " + poolWrong
+                    + " pool block(s) that didn't match the game");
+            }
+            poolChecked = 0;
+            poolWrong = 0;
+            poolRecheck = false;
+        }
+    }
+
+    private void cancelPoolReset() {
+        if (poolResetTask != null) {
+            poolResetTask.cancel();
+            poolResetTask = null;
+        }
     }
 
     private void gameOver() {
         plugin.getLogger().info("Game over");
-        jumpState = JumpState.NO_GAME;
+        setState(JumpState.NO_GAME);
         players.reset();
         cancelTimeout();
+        clearHeat();
         splashdownBlocks.clear();
+        arenaChunks.release();
+        cancelHudTask();
+        watchdog.drop(TickWatchdog.Work.HUD);
+        hudPending = false;
+        hud.hideAll();
+        stopListening();
+        changed();
+    }
+
+    private void setState(JumpState s) {
+        tracer.record(GameTracer.Kind.GAME_STATE, jumpState, s, null);
+        jumpState = s;
+        changed();
+    }
+
+    private void setState(Jumper j, JumpState s) {
+        tracer.record(GameTracer.Kind.JUMPER_STATE, j.state, s, j.player.getName());
+        j.state = s;
+        changed();
+    }
+
+    /* Move, death and respawn events come for every player on the
+     * server, many times a second. The game, the audience and the
+     * chunk pins only listen for them from the start countdown until
+     * the game is over, so an idle arena costs nothing per event. The
+     * audience starts over from the players online each time.
+     */
+    private void startListening() {
+        if (!listening) {
+            PluginManager pm = plugin.getServer().getPluginManager();
+            pm.registerEvents(this, plugin);
+            pm.registerEvents(arenaChunks, plugin);
+            pm.registerEvents(audience, plugin);
+            audience.addAll(plugin.getServer().getOnlinePlayers());
+            listening = true;
+        }
+    }
+
+    private void stopListening() {
+        if (listening) {
+            HandlerList.unregisterAll(this);
+            HandlerList.unregisterAll(arenaChunks);
+            HandlerList.unregisterAll(audience);
+            audience.clear();
+            listening = false;
+        }
     }
 
     private void moveAllWaiters() {
         if (waitTP != null) {
             List<Player> ps = players.getNextPlayers();
             for (Player p : ps) {
-                p.teleport(waitTP);
+                if (findJumper(p) == null) {
+                    teleports.teleport(p, waitTP, null);
+                }
             }
         }
     }
 
-    private void fillSplashdownBlock() {
-        Block splashdownBlock = splashdown.getBlock();
+    private void fillSplashdownBlock(Block splashdownBlock) {
         switch (players.getMode()) {
             case CONTINUOUS:
                 pool.fillBlock(splashdownBlock);
@@ -431,6 +1348,9 @@ public class JumpGame implements Listener {
                 if (pool.atFillLimit() && players.getPlayers().size() > 1) {
                     broadcast("Only one water block is left. Play will now proceed in rounds.");
                     players.setMode(TurnTracker.Mode.ROUNDS);
+                    if (hasListeners(JumpRoundsModeEvent.getHandlerList())) {
+                        callEvent(new JumpRoundsModeEvent(players.numActivePlayers()));
+                    }
                 }
                 break;
 
@@ -442,10 +1362,15 @@ public class JumpGame implements Listener {
 
             default:
                 plugin.getLogger().info("Unexpected TurnTracker.Mode: " + players.getMode());
+                tracer.unexpected(players.getMode(), "JumpGame.fillSplashdownBlock");
                 break;
         }
     }
 
+    /* Fill in last round's splashdowns. This is never put off, even
+     * when the server is busy: the next round's jumpers must not land
+     * in them.
+     */
     private void fillSavedBlocks() {
         for (Block b : splashdownBlocks) {
             pool.fillBlock(b);
@@ -460,16 +1385,30 @@ public class JumpGame implements Listener {
      * If this takes a player out, they get a second chance as if
      * they had missed a jump.
      */
-    private void setJumpTimeout() {
-        BukkitRunnable br = new BukkitRunnable() {
+    private void setJumpTimeout(final Jumper j) {
+        Runnable r = new Runnable() {
             public void run() {
-                Player jumper = players.getCurrentPlayer();
+                final Player jumper = j.player;
+                tracer.record(GameTracer.Kind.TIMEOUT, null, GameTracer.Timeout.JUMP, jumper.getName());
+                telemetry.softTimeout();
+                // Counted as a timeout, so kept out of the platform times.
+                j.arrived = 0;
                 jumper.sendMessage(MSG_PREFIX + "Jump into the water, quick!");
-                jumper.setFireTicks(1000);
-                setHardJumpTimeout();
+                platform.runFor(jumper, new Runnable() {
+                    public void run() {
+                        jumper.setFireTicks(1000);
+                    }
+                });
+                setHardJumpTimeout(j);
             }
         };
-        timeoutTask = br.runTaskLater(plugin, jumpTimeoutTicks);
+        j.arrived = System.currentTimeMillis();
+        if (recordReplays && j.path == null) {
+            j.path = replays.begin(j.arrived, j.player.getLocation());
+        }
+        int ticks = j.lane.getJumpTimeout(jumpTimeoutTicks);
+        j.timeoutTask = platform.runLater(jumpTP, r, ticks);
+        setTimeoutEnds(j, ticks);
     }
 
     /* Set the "hard" jump timeout.
@@ -479,44 +1418,61 @@ public class JumpGame implements Listener {
      * in some non-pool water, easy difficulty setting, rain, etc.).
      * In this case, the player is completely removed from the game.
      */
-    private void setHardJumpTimeout() {
-        BukkitRunnable br = new BukkitRunnable() {
+    private void setHardJumpTimeout(final Jumper j) {
+        Runnable r = new Runnable() {
             public void run() {
-                Player p = players.getCurrentPlayer();
+                Player p = j.player;
+                tracer.record(GameTracer.Kind.TIMEOUT, null, GameTracer.Timeout.HARD_JUMP, p.getName());
+                j.lane.countMiss();
+                telemetry.hardTimeout();
                 broadcast(C_PLAYER + p.getName()
                     + C_PLAIN + " took too long to jump and is eliminated");
+                if (hasListeners(JumpEliminationEvent.getHandlerList())) {
+                    callEvent(new JumpEliminationEvent(p));
+                }
                 removePlayer(p);
                 if (waitTP != null) {
-                    p.teleport(waitTP);
+                    teleports.teleport(p, waitTP, null);
                 }
             }
         };
-        timeoutTask = br.runTaskLater(plugin, jumpHardTimeoutTicks);
+        j.timeoutTask = platform.runLater(jumpTP, r, jumpHardTimeoutTicks);
+        setTimeoutEnds(j, jumpHardTimeoutTicks);
     }
 
-    private void setExitPoolTimeout() {
-        BukkitRunnable br = new BukkitRunnable() {
+    private void setExitPoolTimeout(final Jumper j) {
+        Runnable r = new Runnable() {
             public void run() {
-                forceEndTurn();
+                tracer.record(GameTracer.Kind.TIMEOUT, null, GameTracer.Timeout.EXIT_POOL, j.player.getName());
+                forceEndTurn(j);
             }
         };
-        timeoutTask = br.runTaskLater(plugin, exitPoolTimeoutTicks);
+        int ticks = j.lane.getExitPoolTimeout(exitPoolTimeoutTicks);
+        j.timeoutTask = platform.runLater(jumpTP, r, ticks);
+        setTimeoutEnds(j, ticks);
     }
 
     private void setStartGameTimeout() {
-        BukkitRunnable br = new BukkitRunnable() {
+        // Load the arena during the countdown so the teleports and pool
+        // reset at game start don't have to.
+        arenaChunks.pin(arenaLocations(), pool);
+        arenaChunks.preload();
+
+        Runnable r = new Runnable() {
             private int step = 0;
             public void run() {
                 if (step < 3) {
                     broadcast("Game starts in " + (3 - step) + "...");
                     step += 1;
                 } else {
+                    tracer.record(GameTracer.Kind.TIMEOUT, null, GameTracer.Timeout.START, null);
                     cancelTimeout();
                     startForReal();
+                    publishSnapshot();
                 }
             }
         };
-        timeoutTask = br.runTaskTimer(plugin, startDelaySecs * TICKS_PER_SECOND, TICKS_PER_SECOND);
+        timeoutTask = platform.runTimer(jumpTP, r, startDelaySecs * TICKS_PER_SECOND, TICKS_PER_SECOND);
     }
 
     private void cancelTimeout() {
@@ -526,6 +1482,80 @@ public class JumpGame implements Listener {
         }
     }
 
+    private void cancelTimeout(Jumper j) {
+        if (j.timeoutTask != null) {
+            j.timeoutTask.cancel();
+            j.timeoutTask = null;
+        }
+        j.timeoutEnds = 0;
+    }
+
+    private void setTimeoutEnds(Jumper j, int ticks) {
+        j.timeoutEnds = System.currentTimeMillis() + ticks * 1000L / TICKS_PER_SECOND;
+        updateHud();
+    }
+
+    /* Show the scoreboard to everyone in the game and keep its timer
+     * ticking once a second.
+     */
+    private void startHud() {
+        if (!hudEnabled) { return; }
+        for (Player p : players.getPlayers()) {
+            hud.show(p);
+        }
+        updateHud();
+        Runnable r = new Runnable() {
+            public void run() {
+                long began = watchdog.begin();
+                updateHud();
+                watchdog.end(began);
+            }
+        };
+        hudTask = platform.runTimer(jumpTP, r, TICKS_PER_SECOND, TICKS_PER_SECOND);
+    }
+
+    private void cancelHudTask() {
+        if (hudTask != null) {
+            hudTask.cancel();
+            hudTask = null;
+        }
+    }
+
+    /* Push the current game state to the scoreboard. This is cheap to
+     * call often; the HUD only sends lines that changed. While the
+     * server is busy, calls are put off and merged into one refresh.
+     */
+    private void updateHud() {
+        if (!hudEnabled || !gameInProgress() || hudPending) { return; }
+        hudPending = true;
+        watchdog.run(TickWatchdog.Work.HUD, hudRefresh);
+    }
+
+    private void refreshHud() {
+        if (!hudEnabled || !gameInProgress()) { return; }
+        Player current = players.getCurrentPlayer();
+        if (heat.size() > 1) {
+            hud.setTitle("Jumpers: " + heat.size());
+        } else {
+            hud.setTitle(current == null ? "Jump Game" : "Now: " + current.getName());
+        }
+        hud.setLine(JumpHud.ROUND, players.getMode() == TurnTracker.Mode.ROUNDS
+            ? players.getRoundNum() : JumpHud.HIDDEN);
+        hud.setLine(JumpHud.CONTENDERS, players.numActivePlayers());
+        hud.setLine(JumpHud.COULD_RETURN, players.getProvisionalOut().size());
+        hud.setLine(JumpHud.WATER_LEFT, pool.waterLeft());
+        // Show the timer that runs out first.
+        long ends = 0;
+        for (Jumper j : heat) {
+            if (j.timeoutEnds != 0 && (ends == 0 || j.timeoutEnds < ends)) {
+                ends = j.timeoutEnds;
+            }
+        }
+        long left = ends - System.currentTimeMillis();
+        hud.setLine(JumpHud.TIME_LEFT, ends == 0
+            ? JumpHud.HIDDEN : (int) Math.max(0, (left + 999) / 1000));
+    }
+
     private void startMsg() {
         StringBuilder msg = new StringBuilder();
         msg.append("The jump game starts now. ");
@@ -590,9 +1620,52 @@ public class JumpGame implements Listener {
         }
     }
 
-    /* Send a message to all jump game players.
+    private void fireEliminations() {
+        List<Player> out = players.getEliminated();
+        if (out.size() > 0 && hasListeners(JumpEliminationEvent.getHandlerList())) {
+            for (Player p : out) {
+                callEvent(new JumpEliminationEvent(p));
+            }
+        }
+        out.clear();
+    }
+
+    private void fireWin() {
+        fireEliminations();
+        if (hasListeners(JumpWinEvent.getHandlerList())) {
+            callEvent(new JumpWinEvent(players.getCurrentPlayer(), jumpCount));
+        }
+    }
+
+    /* Events are only built when something is listening for them,
+     * so the game does no extra work when no other plugin cares.
+     */
+    private static boolean hasListeners(HandlerList handlers) {
+        return handlers.getRegisteredListeners().length > 0;
+    }
+
+    private void callEvent(Event e) {
+        plugin.getServer().getPluginManager().callEvent(e);
+    }
+
+    /* Send a message to all jump game players and the audience around
+     * the arena. When the server is busy, the audience gets it a little
+     * later.
      */
     private void broadcast(String msg) {
+        tell(msg);
+        final String text = MSG_PREFIX + msg;
+        final List<Player> except = new ArrayList<Player>(players.getPlayers());
+        watchdog.run(TickWatchdog.Work.MESSAGE, new Runnable() {
+            public void run() {
+                audience.send(text, except);
+            }
+        });
+    }
+
+    /* Send a message to the jump game players only.
+     */
+    private void tell(String msg) {
         List<Player> ps = players.getPlayers();
         for (Player p : ps) {
             p.sendMessage(MSG_PREFIX + msg);
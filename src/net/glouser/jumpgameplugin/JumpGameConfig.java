@@ -20,11 +20,12 @@ package net.glouser.jumpgameplugin;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.Plugin;
@@ -40,9 +41,36 @@ public class JumpGameConfig {
     private static String KEY_START_DELAY = "startDelay";
     private static String KEY_POOL_SIZE_LIMIT = "poolSizeLimit";
     private static String KEY_RESPAWN_DIST = "respawnDist";
+    private static String KEY_AUDIENCE_RADIUS = "audienceRadius";
+    private static String KEY_HEAT_SIZE = "heatSize";
+    private static String KEY_HEAT_SPACING = "heatSpacing";
+    private static String KEY_SWEPT_SPLASHDOWN = "sweptSplashdown";
+    private static String KEY_TELEPORTS_PER_TICK = "teleportsPerTick";
+    private static String KEY_COMMANDS_PER_TICK = "commandsPerTick";
+    private static String KEY_RESTORE_CHECKS_PER_TICK = "restoreChecksPerTick";
+    private static String KEY_RESTORE_CHANGES_PER_TICK = "restoreChangesPerTick";
+    private static String KEY_STATS_EXPORT_MINUTES = "statsExportMinutes";
+    private static String KEY_RECORD_REPLAYS = "recordReplays";
+    private static String KEY_REPLAY_FILE_KB = "replayFileKB";
+    private static String KEY_AUTO_RESTART = "autoRestart";
+    private static String KEY_POOL_RESET_PER_TICK = "poolResetPerTick";
+    private static String KEY_POOL_CHECK_PER_TICK = "poolCheckPerTick";
+    private static String KEY_TICK_BUDGET_MILLIS = "tickBudgetMillis";
+    private static String KEY_MIN_TPS = "minTps";
+    private static String KEY_SCOREBOARD = "scoreboard";
+    private static String KEY_HTTP_PORT = "httpPort";
+    private static String KEY_HTTP_TOKEN = "httpToken";
+    private static String KEY_NODE_NAME = "nodeName";
+    private static String KEY_LOBBY = "lobby";
+    private static String KEY_NODE_TRANSPORT = "nodeTransport";
+    private static String KEY_NODE_PORT = "nodePort";
+    private static String KEY_NODE_PEERS = "nodePeers";
+    private static String KEY_NODE_MAX_PLAYERS = "nodeMaxPlayers";
+    private static String KEY_NODE_PUBLISH_TICKS = "nodePublishTicks";
     private static String KEY_RESPAWN_LOCATION = "respawnLocation";
     private static String KEY_JUMP_LOCATION = "jumpLocation";
     private static String KEY_WAIT_LOCATION = "waitLocation";
+    private static String KEY_PLATFORMS = "platforms";
     private static String KEY_JOIN_BUTTON = "joinButton";
     private static String KEY_START_BUTTON = "startButton";
     private static String KEY_RESET_BUTTON = "resetButton";
@@ -57,7 +85,32 @@ public class JumpGameConfig {
     private static int DEFAULT_EXIT_POOL_TIMEOUT = 200;
     private static int DEFAULT_START_DELAY = 7;
     private static int DEFAULT_RESPAWN_DIST = 32;
+    private static int DEFAULT_AUDIENCE_RADIUS = 48;
     private static int DEFAULT_POOL_SIZE_LIMIT = 1000;
+    private static int DEFAULT_HEAT_SIZE = 1;
+    private static double DEFAULT_HEAT_SPACING = 3.0;
+    private static boolean DEFAULT_SWEPT_SPLASHDOWN = true;
+    private static int DEFAULT_TELEPORTS_PER_TICK = 10;
+    private static int DEFAULT_COMMANDS_PER_TICK = 20;
+    private static int DEFAULT_RESTORE_CHECKS_PER_TICK = 8192;
+    private static int DEFAULT_RESTORE_CHANGES_PER_TICK = 256;
+    private static int DEFAULT_STATS_EXPORT_MINUTES = 0;
+    private static boolean DEFAULT_RECORD_REPLAYS = true;
+    private static int DEFAULT_REPLAY_FILE_KB = 1024;
+    private static boolean DEFAULT_AUTO_RESTART = false;
+    private static int DEFAULT_POOL_RESET_PER_TICK = 64;
+    private static int DEFAULT_POOL_CHECK_PER_TICK = 8;
+    private static double DEFAULT_TICK_BUDGET_MILLIS = 5.0;
+    private static double DEFAULT_MIN_TPS = 18.0;
+    private static boolean DEFAULT_SCOREBOARD = true;
+    private static int DEFAULT_HTTP_PORT = 0;
+    private static String DEFAULT_HTTP_TOKEN = "";
+    private static String DEFAULT_NODE_NAME = "";
+    private static boolean DEFAULT_LOBBY = false;
+    private static String DEFAULT_NODE_TRANSPORT = "loopback";
+    private static int DEFAULT_NODE_PORT = 0;
+    private static int DEFAULT_NODE_MAX_PLAYERS = 0;
+    private static int DEFAULT_NODE_PUBLISH_TICKS = 20;
 
     private Plugin plugin;
 
@@ -94,6 +147,113 @@ public class JumpGameConfig {
         return getConfig().getInt(KEY_RESPAWN_DIST, DEFAULT_RESPAWN_DIST);
     }
 
+    public int getAudienceRadius() {
+        return getConfig().getInt(KEY_AUDIENCE_RADIUS, DEFAULT_AUDIENCE_RADIUS);
+    }
+
+    public int getHeatSize() {
+        return getConfig().getInt(KEY_HEAT_SIZE, DEFAULT_HEAT_SIZE);
+    }
+
+    public double getHeatSpacing() {
+        return getConfig().getDouble(KEY_HEAT_SPACING, DEFAULT_HEAT_SPACING);
+    }
+
+    public boolean getSweptSplashdown() {
+        return getConfig().getBoolean(KEY_SWEPT_SPLASHDOWN, DEFAULT_SWEPT_SPLASHDOWN);
+    }
+
+    public int getTeleportsPerTick() {
+        return getConfig().getInt(KEY_TELEPORTS_PER_TICK, DEFAULT_TELEPORTS_PER_TICK);
+    }
+
+    public int getCommandsPerTick() {
+        return getConfig().getInt(KEY_COMMANDS_PER_TICK, DEFAULT_COMMANDS_PER_TICK);
+    }
+
+    public int getRestoreChecksPerTick() {
+        return getConfig().getInt(KEY_RESTORE_CHECKS_PER_TICK, DEFAULT_RESTORE_CHECKS_PER_TICK);
+    }
+
+    public int getRestoreChangesPerTick() {
+        return getConfig().getInt(KEY_RESTORE_CHANGES_PER_TICK, DEFAULT_RESTORE_CHANGES_PER_TICK);
+    }
+
+    public int getStatsExportMinutes() {
+        return getConfig().getInt(KEY_STATS_EXPORT_MINUTES, DEFAULT_STATS_EXPORT_MINUTES);
+    }
+
+    public boolean getRecordReplays() {
+        return getConfig().getBoolean(KEY_RECORD_REPLAYS, DEFAULT_RECORD_REPLAYS);
+    }
+
+    public int getReplayFileKB() {
+        return getConfig().getInt(KEY_REPLAY_FILE_KB, DEFAULT_REPLAY_FILE_KB);
+    }
+
+    public boolean getAutoRestart() {
+        return getConfig().getBoolean(KEY_AUTO_RESTART, DEFAULT_AUTO_RESTART);
+    }
+
+    public int getPoolResetPerTick() {
+        return getConfig().getInt(KEY_POOL_RESET_PER_TICK, DEFAULT_POOL_RESET_PER_TICK);
+    }
+
+    public int getPoolCheckPerTick() {
+        return getConfig().getInt(KEY_POOL_CHECK_PER_TICK, DEFAULT_POOL_CHECK_PER_TICK);
+    }
+
+    public double getTickBudgetMillis() {
+        return getConfig().getDouble(KEY_TICK_BUDGET_MILLIS, DEFAULT_TICK_BUDGET_MILLIS);
+    }
+
+    public double getMinTps() {
+        return getConfig().getDouble(KEY_MIN_TPS, DEFAULT_MIN_TPS);
+    }
+
+    public boolean getScoreboard() {
+        return getConfig().getBoolean(KEY_SCOREBOARD, DEFAULT_SCOREBOARD);
+    }
+
+    public int getHttpPort() {
+        return getConfig().getInt(KEY_HTTP_PORT, DEFAULT_HTTP_PORT);
+    }
+
+    public String getHttpToken() {
+        return getConfig().getString(KEY_HTTP_TOKEN, DEFAULT_HTTP_TOKEN);
+    }
+
+    /* This server's name on the proxy. Empty if it isn't part of a
+     * network.
+     */
+    public String getNodeName() {
+        return getConfig().getString(KEY_NODE_NAME, DEFAULT_NODE_NAME);
+    }
+
+    public boolean getLobby() {
+        return getConfig().getBoolean(KEY_LOBBY, DEFAULT_LOBBY);
+    }
+
+    public String getNodeTransport() {
+        return getConfig().getString(KEY_NODE_TRANSPORT, DEFAULT_NODE_TRANSPORT);
+    }
+
+    public int getNodePort() {
+        return getConfig().getInt(KEY_NODE_PORT, DEFAULT_NODE_PORT);
+    }
+
+    public List<Integer> getNodePeers() {
+        return getConfig().getIntegerList(KEY_NODE_PEERS);
+    }
+
+    public int getNodeMaxPlayers() {
+        return getConfig().getInt(KEY_NODE_MAX_PLAYERS, DEFAULT_NODE_MAX_PLAYERS);
+    }
+
+    public int getNodePublishTicks() {
+        return getConfig().getInt(KEY_NODE_PUBLISH_TICKS, DEFAULT_NODE_PUBLISH_TICKS);
+    }
+
     public Location getRespawnLocation() {
         return getLocation(KEY_RESPAWN_LOCATION);
     }
@@ -110,6 +270,53 @@ public class JumpGameConfig {
         setLocation(KEY_JUMP_LOCATION, l);
     }
 
+    /* Extra jump platforms, each stored as a location plus optional
+     * jumpTimeout and exitPoolTimeout overrides.
+     */
+    public List<JumpPlatform> getPlatforms() {
+        List<JumpPlatform> ps = new ArrayList<JumpPlatform>();
+        FileConfiguration config = getConfig();
+        String worldName = config.getString(KEY_WORLD);
+        if (worldName == null) { return ps; }
+        World world = getWorld(worldName);
+        if (world == null) { return ps; }
+        for (Map<?, ?> m : config.getMapList(KEY_PLATFORMS)) {
+            Location l = new Location(world,
+                getNumber(m, KEY_X), getNumber(m, KEY_Y), getNumber(m, KEY_Z),
+                (float) getNumber(m, KEY_YAW), (float) getNumber(m, KEY_PITCH));
+            ps.add(new JumpPlatform(l,
+                (int) getNumber(m, KEY_JUMP_TIMEOUT),
+                (int) getNumber(m, KEY_EXIT_POOL_TIMEOUT)));
+        }
+        return ps;
+    }
+
+    public void setPlatforms(List<JumpPlatform> ps) {
+        FileConfiguration config = getConfig();
+        List<Map<String, Object>> list = new ArrayList<Map<String, Object>>();
+        for (JumpPlatform jp : ps) {
+            Location l = jp.getLocation();
+            if (!config.isSet(KEY_WORLD)) {
+                config.set(KEY_WORLD, l.getWorld().getName());
+            }
+            Map<String, Object> m = new LinkedHashMap<String, Object>();
+            m.put(KEY_X, l.getX());
+            m.put(KEY_Y, l.getY());
+            m.put(KEY_Z, l.getZ());
+            m.put(KEY_YAW, l.getYaw());
+            m.put(KEY_PITCH, l.getPitch());
+            if (jp.getJumpTimeout() > 0) {
+                m.put(KEY_JUMP_TIMEOUT, jp.getJumpTimeout());
+            }
+            if (jp.getExitPoolTimeout() > 0) {
+                m.put(KEY_EXIT_POOL_TIMEOUT, jp.getExitPoolTimeout());
+            }
+            list.add(m);
+        }
+        config.set(KEY_PLATFORMS, list);
+        saveConfig();
+    }
+
     public Location getWaitLocation() {
         return getLocation(KEY_WAIT_LOCATION);
     }
@@ -142,45 +349,42 @@ public class JumpGameConfig {
         setButton(KEY_RESET_BUTTON, b);
     }
 
-    public List<Block> getPool() {
+    /* Parse the saved pool coordinates into pool. The world isn't
+     * looked up; that waits until a game needs the blocks.
+     */
+    public void loadPool(JumpPool pool) {
         FileConfiguration config = getConfig();
         String worldName = config.getString(KEY_WORLD);
         String poolXZs = config.getString(KEY_POOL_XZ);
         if (worldName == null || poolXZs == null || !config.isSet(KEY_POOL_Y)) {
-            return null;
-        }
-        int poolY = config.getInt(KEY_POOL_Y);
-        World poolWorld = getWorld(worldName);
-        if (poolWorld == null) {
-            getLogger().warning("world '" + worldName + "' not found");
-            return null;
+            pool.setCoords(null, 0, new int[0]);
+            return;
         }
         String[] coords = poolXZs.split(",");
         if (coords.length % 2 != 0) {
             getLogger().warning("pool coordinates uneven length");
-            return null;
+            pool.setCoords(null, 0, new int[0]);
+            return;
         }
-        ArrayList<Block> pool = new ArrayList<Block>();
-        for (int i = 0; i < coords.length; i += 2) {
-            int x = Integer.parseInt(coords[i]);
-            int z = Integer.parseInt(coords[i+1]);
-            pool.add(poolWorld.getBlockAt(x, poolY, z));
+        int[] xz = new int[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            xz[i] = Integer.parseInt(coords[i]);
         }
+        pool.setCoords(worldName, config.getInt(KEY_POOL_Y), xz);
         getLogger().info("Loaded pool with size " + pool.size());
-        return pool;
     }
 
-    public void setPool(List<Block> pool) {
+    public void setPool(JumpPool pool) {
         ArrayList<String> coords = new ArrayList<String>();
-        for (Block b : pool) {
-            coords.add(Integer.toString(b.getX()));
-            coords.add(Integer.toString(b.getZ()));
+        for (int i = 0; i < pool.size(); i++) {
+            coords.add(Integer.toString(pool.getX(i)));
+            coords.add(Integer.toString(pool.getZ(i)));
         }
         FileConfiguration config = getConfig();
         config.set(KEY_POOL_XZ, join(coords, ","));
-        config.set(KEY_POOL_Y, pool.get(0).getY());
+        config.set(KEY_POOL_Y, pool.getY());
         if (!config.isSet(KEY_WORLD)) {
-            config.set(KEY_WORLD, pool.get(0).getWorld().getName());
+            config.set(KEY_WORLD, pool.getWorldName());
         }
         saveConfig();
     }
@@ -263,6 +467,11 @@ public class JumpGameConfig {
 
     /* *********************************************************** */
 
+    private static double getNumber(Map<?, ?> m, String key) {
+        Object o = m.get(key);
+        return (o instanceof Number) ? ((Number) o).doubleValue() : 0;
+    }
+
     private static String join(List<String> strs, String delim) {
         StringBuilder sb = new StringBuilder();
         Iterator<String> iter = strs.iterator();
@@ -18,6 +18,11 @@
 
 package net.glouser.jumpgameplugin;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -35,6 +40,7 @@ import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.plugin.PluginManager;
@@ -47,8 +53,14 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
         void set(T b);
     }
 
+    private Platform platform;
     private JumpGame game;
     private JumpPool pool;
+    private ArenaChunks arenaChunks;
+    private GameCommandQueue commandQueue;
+    private AdminServer adminServer;
+    private LobbyRouter lobby;
+    private Platform.Task statsTask;
     private JumpGameConfig config;
     private Button btnJoin;
     private Button btnStart;
@@ -56,110 +68,255 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
     private Location respawnLocation;
     private Player configPlayer;
     private ConfigSetter<Button> buttonSetter;
+    private CommandRegistry commands;
     private int respawnDist;
 
     @Override
     public void onEnable() {
-        pool = new JumpPool();
-        game = new JumpGame(this, pool);
+        platform = createPlatform();
+        getLogger().info("Using " + platform.getName() + " scheduling, teleports and chunk loading");
+        pool = new JumpPool(getServer());
+        arenaChunks = new ArenaChunks(platform);
+        game = new JumpGame(this, pool, arenaChunks, platform);
+        commandQueue = new GameCommandQueue(game);
         config = new JumpGameConfig(this);
         loadConfig();
+        registerCommands();
         getLogger().info("Registering event listeners");
         PluginManager pm = getServer().getPluginManager();
         pm.registerEvents(this, this);
-        pm.registerEvents(game, this);
+        startAdminServer();
+        startLobby();
+        startStatsExport();
     }
 
     @Override
     public void onDisable() {
+        if (statsTask != null) {
+            statsTask.cancel();
+            statsTask = null;
+        }
+        if (adminServer != null) {
+            adminServer.stop();
+            adminServer = null;
+        }
+        if (lobby != null) {
+            lobby.stop();
+            lobby = null;
+        }
         getLogger().info("Unregistering event listeners");
         HandlerList.unregisterAll((org.bukkit.plugin.Plugin)this);
+        commandQueue.close();
         game.disable();
         game = null;
         config = null;
     }
 
-    @Override
-    public boolean onCommand(CommandSender sender, Command cmd,
-                             String label, String[] args) {
-        // Require op status for all commands.
-        if (!sender.isOp()) {
-            sender.sendMessage("That command requires op status.");
-            return true;
-        }
+    /* For other plugins and threads that need to act on the game.
+     */
+    public GameCommandQueue getCommandQueue() {
+        return commandQueue;
+    }
 
-        if (cmd.getName().equalsIgnoreCase("jumpAddPlayer")) {
-            return doAddPlayer(sender, args);
-        } else if (cmd.getName().equalsIgnoreCase("jumpRmPlayer")) {
-            return doRemovePlayer(sender, args);
-        } else if (cmd.getName().equalsIgnoreCase("jumpList")) {
-            doListPlayers(sender);
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpStart")) {
-            doStart(sender);
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpReset")) {
-            doReset(sender);
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpSetJoin")) {
-            configButton(sender, new ConfigSetter<Button>() {
-                public String label() { return "join game"; }
-                public void set(Button b) {
-                    btnJoin = b;
-                    config.setJoinButton(b);
-                }
-            });
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpSetStart")) {
-            configButton(sender, new ConfigSetter<Button>() {
-                public String label() { return "game start"; }
-                public void set(Button b) {
-                    btnStart = b;
-                    config.setStartButton(b);
-                }
-            });
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpSetReset")) {
-            configButton(sender, new ConfigSetter<Button>() {
-                public String label() { return "game reset"; }
-                public void set(Button b) {
-                    btnReset = b;
-                    config.setResetButton(b);
-                }
-            });
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpSetJump")) {
-            configLocation(sender, new ConfigSetter<Location>() {
-                public String label() { return "jumper TP point"; }
-                public void set(Location l) {
-                    game.setJumpTP(l);
-                    config.setJumpLocation(l);
-                }
-            });
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpSetWait")) {
-            configLocation(sender, new ConfigSetter<Location>() {
-                public String label() { return "wait area TP point"; }
-                public void set(Location l) {
-                    game.setWaitTP(l);
-                    config.setWaitLocation(l);
-                }
-            });
-            return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpSetSpawn")) {
-            configLocation(sender, new ConfigSetter<Location>() {
-                public String label() { return "respawn point"; }
-                public void set(Location l) {
-                    respawnLocation = l;
-                    config.setRespawnLocation(l);
+    @Override
+    public boolean onCommand(final CommandSender sender, final Command cmd,
+                             final String label, final String[] args) {
+        // On region-threaded servers, commands arrive on the sender's
+        // thread. Hand them over to the game's thread.
+        if (!game.isGameThread()) {
+            game.execute(new Runnable() {
+                public void run() {
+                    commands.dispatch(sender, cmd.getName(), args);
                 }
             });
             return true;
-        } else if (cmd.getName().equalsIgnoreCase("jumpSetPool")) {
-            doSetPool(sender);
-            return true;
         }
-        return false;
+        commands.dispatch(sender, cmd.getName(), args);
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command cmd,
+                                      String label, String[] args) {
+        return commands.complete(sender, cmd.getName(), args);
+    }
+
+    private void registerCommands() {
+        commands = new CommandRegistry();
+        for (Player p : getServer().getOnlinePlayers()) {
+            commands.playerJoined(p);
+        }
+        commands.register(new JumpCommand("add", "jumpAddPlayer", "[<player>]...", JumpCommand.Args.PLAYERS) {
+            public boolean run(CommandSender sender, String[] args) {
+                return doAddPlayer(sender, args);
+            }
+        });
+        commands.register(new JumpCommand("rm", "jumpRmPlayer", "[<player>]...", JumpCommand.Args.PLAYERS) {
+            public boolean run(CommandSender sender, String[] args) {
+                return doRemovePlayer(sender, args);
+            }
+        });
+        commands.register(new JumpCommand("list", "jumpList", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                doListPlayers(sender);
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("start", "jumpStart", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                doStart(sender);
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("reset", "jumpReset", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                doReset(sender);
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("setjoin", "jumpSetJoin", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                configButton(sender, new ConfigSetter<Button>() {
+                    public String label() { return "join game"; }
+                    public void set(Button b) {
+                        btnJoin = b;
+                        config.setJoinButton(b);
+                    }
+                });
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("setstart", "jumpSetStart", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                configButton(sender, new ConfigSetter<Button>() {
+                    public String label() { return "game start"; }
+                    public void set(Button b) {
+                        btnStart = b;
+                        config.setStartButton(b);
+                    }
+                });
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("setreset", "jumpSetReset", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                configButton(sender, new ConfigSetter<Button>() {
+                    public String label() { return "game reset"; }
+                    public void set(Button b) {
+                        btnReset = b;
+                        config.setResetButton(b);
+                    }
+                });
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("setjump", "jumpSetJump", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                configLocation(sender, new ConfigSetter<Location>() {
+                    public String label() { return "jumper TP point"; }
+                    public void set(Location l) {
+                        game.setJumpTP(l);
+                        config.setJumpLocation(l);
+                    }
+                });
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("setwait", "jumpSetWait", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                configLocation(sender, new ConfigSetter<Location>() {
+                    public String label() { return "wait area TP point"; }
+                    public void set(Location l) {
+                        game.setWaitTP(l);
+                        config.setWaitLocation(l);
+                    }
+                });
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("setspawn", "jumpSetSpawn", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                configLocation(sender, new ConfigSetter<Location>() {
+                    public String label() { return "respawn point"; }
+                    public void set(Location l) {
+                        respawnLocation = l;
+                        config.setRespawnLocation(l);
+                    }
+                });
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("setpool", "jumpSetPool", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                doSetPool(sender);
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("addplatform", "jumpAddPlatform",
+                                          "[<jumpTimeout> [<exitPoolTimeout>]]", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                return doAddPlatform(sender, args);
+            }
+        });
+        commands.register(new JumpCommand("clearplatforms", "jumpClearPlatforms", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                game.setPlatforms(new ArrayList<JumpPlatform>());
+                config.setPlatforms(new ArrayList<JumpPlatform>());
+                sender.sendMessage("Removed all extra jump platforms");
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("platforms", "jumpPlatforms", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                doListPlatforms(sender);
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("stats", "jumpStats", "[reset]", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                return doStats(sender, args);
+            }
+        });
+        commands.register(new JumpCommand("replay", "jumpReplay", "[<player>]", JumpCommand.Args.PLAYERS) {
+            public boolean run(CommandSender sender, String[] args) {
+                return doReplay(sender, args);
+            }
+        });
+        commands.register(new JumpCommand("snapshot", "jumpSnapshot", "[<margin>]", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                return doSnapshot(sender, args);
+            }
+        });
+        commands.register(new JumpCommand("restore", "jumpRestore", "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                doRestore(sender);
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("trace", null, "", JumpCommand.Args.NONE) {
+            public boolean run(final CommandSender sender, String[] args) {
+                game.getTracer().dump(new GameTracer.DumpCallback() {
+                    public void done(final File f) {
+                        game.execute(new Runnable() {
+                            public void run() {
+                                if (f != null) {
+                                    sender.sendMessage("Game trace written to " + f.getPath());
+                                } else {
+                                    sender.sendMessage("Could not write the game trace; see the server log");
+                                }
+                            }
+                        });
+                    }
+                });
+                return true;
+            }
+        });
+        commands.register(new JumpCommand("nodes", null, "", JumpCommand.Args.NONE) {
+            public boolean run(CommandSender sender, String[] args) {
+                doNodes(sender);
+                return true;
+            }
+        });
     }
 
     private void configButton(CommandSender sender, ConfigSetter<Button> cs) {
@@ -190,16 +347,28 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
         }
     }
 
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        commands.playerJoined(event.getPlayer());
+    }
+
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        game.removePlayer(event.getPlayer());
+        final Player p = event.getPlayer();
+        commands.playerLeft(p);
+        game.execute(new Runnable() {
+            public void run() {
+                game.removePlayer(p);
+            }
+        });
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST)
+    /* During a game, JumpGame sends jumpers back to their platform
+     * at a higher priority.
+     */
+    @EventHandler(priority = EventPriority.HIGH)
     public void onPlayerRespawn(PlayerRespawnEvent event) {
-        if (game.isCurrentPlayer(event.getPlayer())) {
-            event.setRespawnLocation(config.getJumpLocation());
-        } else if (respawnLocation != null) {
+        if (respawnLocation != null) {
             Location pl = event.getPlayer().getLocation();
             double dist = Math.max(Math.abs(pl.getX() - respawnLocation.getX()),
                                    Math.abs(pl.getZ() - respawnLocation.getZ()));
@@ -210,7 +379,22 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
     }
 
     @EventHandler
-    public void onPlayerInteract(PlayerInteractEvent event) {
+    public void onPlayerInteract(final PlayerInteractEvent event) {
+        if (!game.isGameThread()) {
+            // Buttons and set-up clicks are handled on the game's thread
+            // on region-threaded servers. Nothing here cancels the event,
+            // so it doesn't have to be handled in place.
+            if (event.getAction() == Action.RIGHT_CLICK_BLOCK
+                  || event.getAction() == Action.LEFT_CLICK_BLOCK) {
+                game.execute(new Runnable() {
+                    public void run() {
+                        onPlayerInteract(event);
+                    }
+                });
+            }
+            return;
+        }
+
         if (event.getAction() == Action.RIGHT_CLICK_BLOCK
               && event.getClickedBlock().getType() == Material.STONE_BUTTON) {
             if (btnJoin != null && btnJoin.isBlock(event.getClickedBlock())) {
@@ -255,7 +439,7 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
             return true;
         }
         for (int i = 0; i < args.length; i++) {
-            Player target = getServer().getPlayer(args[i]);
+            Player target = commands.findPlayer(args[i]);
             if (target == null) {
                 sender.sendMessage("Player " + args[i] + " is not online");
             } else {
@@ -265,6 +449,9 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
                     case FAILED_ALREADY_PLAYING:
                         sender.sendMessage("Can't add player - " + target.getName() + " has already joined");
                         break;
+                    case FAILED_FULL:
+                        sender.sendMessage("Can't add player - the game is full");
+                        break;
                 }
             }
         }
@@ -272,6 +459,13 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
     }
 
     private void playerJoinGame(Player p) {
+        if (lobby != null) {
+            String node = lobby.route(p);
+            if (node != null) {
+                p.sendMessage("Sending you to the jump game on " + node);
+                return;
+            }
+        }
         switch (game.addPlayer(p)) {
             case SUCCESS:
                 break;
@@ -283,6 +477,10 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
             case FAILED_ALREADY_PLAYING:
                 p.sendMessage("You already joined the jump game");
                 break;
+
+            case FAILED_FULL:
+                p.sendMessage("Can't join - the jump game is full.");
+                break;
         }
     }
 
@@ -303,7 +501,7 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
             return false;
         }
         for (int i = 0; i < args.length; i++) {
-            Player target = getServer().getPlayer(args[i]);
+            Player target = commands.findPlayer(args[i]);
             if (target == null) {
                 sender.sendMessage("Player " + args[i] + " is not online");
             } else {
@@ -331,6 +529,47 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
         sender.sendMessage(msg.toString());
     }
 
+    private boolean doAddPlatform(CommandSender sender, String[] args) {
+        if (args.length > 2) {
+            return false;
+        }
+        final int[] timeouts = new int[2];
+        try {
+            for (int i = 0; i < args.length; i++) {
+                timeouts[i] = Integer.parseInt(args[i]);
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        configLocation(sender, new ConfigSetter<Location>() {
+            public String label() { return "extra jump platform"; }
+            public void set(Location l) {
+                List<JumpPlatform> ps = config.getPlatforms();
+                ps.add(new JumpPlatform(l, timeouts[0], timeouts[1]));
+                game.setPlatforms(ps);
+                config.setPlatforms(ps);
+            }
+        });
+        return true;
+    }
+
+    private void doListPlatforms(CommandSender sender) {
+        List<JumpPlatform> lanes = game.getLanes();
+        if (lanes.size() == 0) {
+            sender.sendMessage("Jump platform not set");
+            return;
+        }
+        for (int i = 0; i < lanes.size(); i++) {
+            JumpPlatform jp = lanes.get(i);
+            Location l = jp.getLocation();
+            sender.sendMessage("Platform " + (i + 1) + " at "
+                + l.getBlockX() + ", " + l.getBlockY() + ", " + l.getBlockZ()
+                + ": " + jp.getTurns() + " turns, "
+                + jp.getSplashdowns() + " splashdowns, "
+                + jp.getMisses() + " misses");
+        }
+    }
+
     private void doStart(CommandSender sender) {
         switch (game.start()) {
             case SUCCESS:
@@ -355,7 +594,231 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
             case FAILED_NO_PLAYERS:
                 sender.sendMessage("Can't start game: no players");
                 break;
+
+            case FAILED_RESTORING:
+                sender.sendMessage("Can't start game: the arena is being restored");
+                break;
+        }
+    }
+
+    private boolean doStats(CommandSender sender, String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("reset")) {
+            game.getTelemetry().clear();
+            game.getWatchdog().clear();
+            sender.sendMessage("Jump game stats cleared");
+            return true;
+        } else if (args.length > 0) {
+            return false;
+        }
+        for (String line : game.getTelemetry().summary()) {
+            sender.sendMessage(line);
+        }
+        for (String line : game.getWatchdog().summary()) {
+            sender.sendMessage(line);
+        }
+        return true;
+    }
+
+    private boolean doReplay(CommandSender sender, String[] args) {
+        if (args.length > 1) {
+            return false;
+        }
+        if (platform.isRegionThreaded()) {
+            // Moving the marker needs synchronous entity teleports.
+            sender.sendMessage("Replays can't be shown on this server");
+            return true;
+        }
+        ReplayRecorder.Recording r = game.getReplays().find(args.length == 1 ? args[0] : null);
+        if (r == null) {
+            sender.sendMessage("No recorded jump found");
+        } else if (!game.playReplay(r)) {
+            sender.sendMessage("Can't play that jump back");
+        } else {
+            sender.sendMessage("Replaying " + r.getPlayer() + "'s "
+                + (r.isSplashdown() ? "splashdown" : "miss")
+                + String.format(" (%.1fs)", r.getTicks() / 20.0));
+        }
+        return true;
+    }
+
+    /* Every statsExportMinutes, write the timing summary to stats.txt
+     * in the plugin folder. The summary is taken on the game's thread;
+     * writing it happens on another thread.
+     */
+    private void startStatsExport() {
+        int minutes = config.getStatsExportMinutes();
+        if (minutes <= 0) {
+            return;
+        }
+        final File file = new File(getDataFolder(), "stats.txt");
+        final Runnable export = new Runnable() {
+            public void run() {
+                final List<String> lines = game.getTelemetry().summary();
+                lines.addAll(game.getWatchdog().summary());
+                lines.add(0, "# " + new Date());
+                new Thread(new Runnable() {
+                    public void run() {
+                        writeStats(file, lines);
+                    }
+                }, "JumpGame-stats").start();
+            }
+        };
+        long period = minutes * 60L * 20L;
+        statsTask = platform.runTimer(null, new Runnable() {
+            public void run() {
+                game.execute(export);
+            }
+        }, period, period);
+    }
+
+    private void writeStats(File file, List<String> lines) {
+        try {
+            PrintWriter out = new PrintWriter(new FileWriter(file));
+            try {
+                for (String line : lines) {
+                    out.println(line);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            getLogger().warning("Could not write stats: " + e.getMessage());
+        }
+    }
+
+    /* Snapshot everything in a box around the arena: the pool, jump
+     * platforms, waiting area and buttons, plus margin blocks on every
+     * side. The box is read here; compressing and saving it happens on
+     * another thread.
+     */
+    private boolean doSnapshot(final CommandSender sender, String[] args) {
+        int margin = 4;
+        if (args.length > 1) {
+            return false;
+        } else if (args.length == 1) {
+            try {
+                margin = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        List<Location> points = new ArrayList<Location>();
+        for (JumpPlatform jp : game.getLanes()) {
+            points.add(jp.getLocation());
+        }
+        points.add(config.getWaitLocation());
+        World poolWorld = pool.getWorld();
+        for (int i = 0; i < pool.size() && poolWorld != null; i++) {
+            points.add(new Location(poolWorld, pool.getX(i), pool.getY(), pool.getZ(i)));
+        }
+        World world = null;
+        int[] box = null;
+        for (Location l : points) {
+            if (l == null) { continue; }
+            world = l.getWorld();
+            box = includeInBox(box, l.getBlockX(), l.getBlockY(), l.getBlockZ());
+        }
+        for (Button b : new Button[] { btnJoin, btnStart, btnReset }) {
+            if (b != null && box != null) {
+                box = includeInBox(box, b.getX(), b.getY(), b.getZ());
+            }
+        }
+        if (box == null) {
+            sender.sendMessage("Set up the jump platform and pool first");
+            return true;
+        }
+
+        final ArenaSnapshot snap = ArenaSnapshot.capture(world,
+            box[0] - margin, box[1] - margin, box[2] - margin,
+            box[3] + margin, box[4] + margin, box[5] + margin);
+        final File file = getSnapshotFile();
+        sender.sendMessage("Saving arena snapshot of " + snap.size() + " blocks");
+        new Thread(new Runnable() {
+            public void run() {
+                final String msg;
+                try {
+                    snap.write(file);
+                    msg = "Saved arena snapshot (" + (file.length() / 1024) + " KB)";
+                } catch (IOException e) {
+                    getLogger().warning("Could not save arena snapshot: " + e.getMessage());
+                    game.execute(new Runnable() {
+                        public void run() {
+                            sender.sendMessage("Could not save arena snapshot");
+                        }
+                    });
+                    return;
+                }
+                getLogger().info(msg);
+                game.execute(new Runnable() {
+                    public void run() {
+                        sender.sendMessage(msg);
+                    }
+                });
+            }
+        }, "JumpGame-snapshot").start();
+        return true;
+    }
+
+    private static int[] includeInBox(int[] box, int x, int y, int z) {
+        if (box == null) {
+            return new int[] { x, y, z, x, y, z };
+        }
+        box[0] = Math.min(box[0], x);
+        box[1] = Math.min(box[1], y);
+        box[2] = Math.min(box[2], z);
+        box[3] = Math.max(box[3], x);
+        box[4] = Math.max(box[4], y);
+        box[5] = Math.max(box[5], z);
+        return box;
+    }
+
+    private void doRestore(final CommandSender sender) {
+        if (game.isRestoring()) {
+            sender.sendMessage("The arena is already being restored");
+            return;
+        }
+        final File file = getSnapshotFile();
+        if (!file.exists()) {
+            sender.sendMessage("No arena snapshot; use /jumpSnapshot first");
+            return;
+        }
+        new Thread(new Runnable() {
+            public void run() {
+                final ArenaSnapshot snap;
+                try {
+                    snap = ArenaSnapshot.read(file);
+                } catch (IOException e) {
+                    getLogger().warning("Could not load arena snapshot: " + e.getMessage());
+                    return;
+                }
+                game.execute(new Runnable() {
+                    public void run() {
+                        startRestore(sender, snap);
+                    }
+                });
+            }
+        }, "JumpGame-snapshot").start();
+    }
+
+    private void startRestore(final CommandSender sender, ArenaSnapshot snap) {
+        World world = getServer().getWorld(snap.getWorldName());
+        if (world == null) {
+            sender.sendMessage("World '" + snap.getWorldName() + "' not found");
+            return;
         }
+        boolean started = game.restoreArena(snap, world, new ArenaRestorer.Callback() {
+            public void done(int changed) {
+                String msg = "Arena restored; " + changed + " blocks put back";
+                getLogger().info(msg);
+                sender.sendMessage(msg);
+            }
+        });
+        sender.sendMessage(started ? "Restoring the arena" : "Can't restore the arena during a game");
+    }
+
+    private File getSnapshotFile() {
+        return new File(getDataFolder(), "arena.snapshot");
     }
 
     private void doReset(CommandSender sender) {
@@ -390,13 +853,91 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
             sender.sendMessage("Pool size exceeded limit");
             getLogger().info("Pool size exceeded limit");
         }
-        config.setPool(pool.getBlocks());
+        config.setPool(pool);
+        game.poolChanged();
 
         String msg = "Found pool with size " + pool.size();
         sender.sendMessage(msg);
         getLogger().info(msg);
     }
 
+    private void startAdminServer() {
+        int port = config.getHttpPort();
+        if (port <= 0) { return; }
+        String token = config.getHttpToken();
+        if (token == null || token.length() == 0) {
+            getLogger().warning("Not starting admin API on port " + port + ": httpToken is not set");
+            return;
+        }
+        adminServer = new AdminServer(this, game, commandQueue);
+        try {
+            adminServer.start(port, token);
+            getServer().getPluginManager().registerEvents(adminServer, this);
+        } catch (IOException e) {
+            getLogger().warning("Could not start admin API on port " + port + ": " + e);
+            adminServer = null;
+        }
+    }
+
+    private void startLobby() {
+        String name = config.getNodeName();
+        if (name.length() == 0) { return; }
+        NodeTransport transport;
+        if (config.getNodeTransport().equals("local")) {
+            transport = new LocalTransport();
+        } else {
+            transport = new LoopbackTransport(getLogger(), config.getNodePort(), config.getNodePeers());
+        }
+        lobby = new LobbyRouter(this, platform, game, transport, name, config.getLobby());
+        lobby.setPublishTicks(config.getNodePublishTicks());
+        try {
+            lobby.start();
+            getLogger().info("Joined jump game network as " + name + " over " + transport.getName()
+                             + (lobby.isLobby() ? ", routing players as the lobby" : ""));
+        } catch (IOException e) {
+            getLogger().warning("Could not join jump game network: " + e);
+            lobby = null;
+        }
+    }
+
+    private void doNodes(CommandSender sender) {
+        if (lobby == null) {
+            sender.sendMessage("This server is not part of a jump game network");
+            return;
+        }
+        for (NodeStatus s : lobby.getNodes()) {
+            String msg = s.getName() + (s.getName().equals(lobby.getName()) ? " (here)" : "")
+                + ": " + (s.isOpen() ? "open" : "game in progress")
+                + ", " + s.getPlayers() + " waiting";
+            if (s.getMaxPlayers() > 0) {
+                msg += " of " + s.getMaxPlayers();
+            }
+            sender.sendMessage(msg);
+        }
+    }
+
+    /* The Paper and Folia platforms only touch newer classes by
+     * reflection, but if one of them can't be loaded anyway (an older
+     * Java, or a server API that changed), plain Bukkit still works.
+     */
+    private Platform createPlatform() {
+        try {
+            if (FoliaPlatform.isSupported()) {
+                try {
+                    return new FoliaPlatform(this);
+                } catch (Exception e) {
+                    getLogger().warning("Folia schedulers not usable: " + e);
+                }
+            }
+            if (PaperPlatform.isSupported()) {
+                return new PaperPlatform(this);
+            }
+        } catch (LinkageError e) {
+            getLogger().warning("Paper features not usable: " + e);
+        }
+        return new BukkitPlatform(this);
+    }
+
     private void loadConfig() {
         saveDefaultConfig(); // does not overwrite existing config
         respawnLocation = config.getRespawnLocation();
@@ -408,9 +949,27 @@ public final class JumpGamePlugin extends JavaPlugin implements Listener {
         game.setJumpHardTimeoutTicks(config.getJumpHardTimeout());
         game.setExitPoolTimeoutTicks(config.getExitPoolTimeout());
         game.setStartDelay(config.getStartDelay());
+        game.setHeatSize(config.getHeatSize());
+        game.setHeatSpacing(config.getHeatSpacing());
+        game.getAudience().setRadius(config.getAudienceRadius());
+        game.setSweptSplashdown(config.getSweptSplashdown());
+        game.setAutoRestart(config.getAutoRestart());
+        game.setMaxPlayers(config.getNodeMaxPlayers());
+        game.setPoolResetPerTick(config.getPoolResetPerTick());
+        game.setPoolCheckPerTick(config.getPoolCheckPerTick());
+        game.getWatchdog().setBudget(config.getTickBudgetMillis(), config.getMinTps());
+        game.setRecordReplays(config.getRecordReplays());
+        game.getReplays().setMaxFileBytes(config.getReplayFileKB() * 1024L);
+        game.setRestoreBudget(config.getRestoreChecksPerTick(), config.getRestoreChangesPerTick());
+        game.setTeleportsPerTick(config.getTeleportsPerTick());
+        commandQueue.setCommandsPerTick(config.getCommandsPerTick());
+        // Folia doesn't support the scoreboard API.
+        game.setHudEnabled(config.getScoreboard() && !platform.isRegionThreaded());
         game.setJumpTP(config.getJumpLocation());
+        game.setPlatforms(config.getPlatforms());
         game.setWaitTP(config.getWaitLocation());
-        pool.setBlocks(config.getPool());
+        config.loadPool(pool);
+        game.poolChanged();
     }
 
 }
@@ -0,0 +1,181 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scoreboard.DisplaySlot;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.ScoreboardManager;
+
+/* Sidebar scoreboard showing the state of the jump game.
+ * Values are set as often as the game likes, but only lines whose
+ * value actually changed are sent, and at most once per tick.
+ */
+public class JumpHud {
+
+    public static int ROUND = 0;
+    public static int CONTENDERS = 1;
+    public static int COULD_RETURN = 2;
+    public static int WATER_LEFT = 3;
+    public static int TIME_LEFT = 4;
+
+    // Value of a line that should not be shown.
+    public static int HIDDEN = Integer.MIN_VALUE;
+
+    private static String[] LABELS = {
+        "Round",
+        "Contenders",
+        "Could return",
+        "Water left",
+        "Time left"
+    };
+
+    // Scoreboard titles are limited to 32 characters.
+    private static int MAX_TITLE = 32;
+
+    private Plugin plugin;
+    private Scoreboard board;
+    private Objective objective;
+    private OfflinePlayer[] entries;
+    private int[] values;
+    private int[] shown;
+    private String title;
+    private String shownTitle;
+    private List<Player> viewers;
+    private BukkitTask flushTask;
+
+    public JumpHud(Plugin plugin) {
+        this.plugin = plugin;
+        values = new int[LABELS.length];
+        shown = new int[LABELS.length];
+        for (int i = 0; i < LABELS.length; i++) {
+            values[i] = HIDDEN;
+            shown[i] = HIDDEN;
+        }
+        title = "";
+        shownTitle = "";
+        viewers = new ArrayList<Player>();
+    }
+
+    public void show(Player p) {
+        if (!viewers.contains(p) && init()) {
+            viewers.add(p);
+            p.setScoreboard(board);
+        }
+    }
+
+    public void hide(Player p) {
+        if (viewers.remove(p)) {
+            p.setScoreboard(getManager().getMainScoreboard());
+        }
+    }
+
+    public void hideAll() {
+        for (Player p : viewers) {
+            p.setScoreboard(getManager().getMainScoreboard());
+        }
+        viewers.clear();
+    }
+
+    public void setTitle(String t) {
+        if (t.length() > MAX_TITLE) {
+            t = t.substring(0, MAX_TITLE);
+        }
+        if (!t.equals(title)) {
+            title = t;
+            markDirty();
+        }
+    }
+
+    public void setLine(int line, int value) {
+        if (values[line] != value) {
+            values[line] = value;
+            markDirty();
+        }
+    }
+
+    public void disable() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        hideAll();
+    }
+
+    private void markDirty() {
+        if (flushTask != null || board == null) { return; }
+        BukkitRunnable br = new BukkitRunnable() {
+            public void run() {
+                flushTask = null;
+                flush();
+            }
+        };
+        flushTask = br.runTask(plugin);
+    }
+
+    private void flush() {
+        if (!title.equals(shownTitle)) {
+            objective.setDisplayName(title);
+            shownTitle = title;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == shown[i]) {
+                continue;
+            }
+            if (values[i] == HIDDEN) {
+                board.resetScores(entries[i]);
+            } else {
+                objective.getScore(entries[i]).setScore(values[i]);
+            }
+            shown[i] = values[i];
+        }
+    }
+
+    /* The scoreboard manager isn't available until the worlds are
+     * loaded, so the board is created on first use.
+     */
+    private boolean init() {
+        if (board != null) { return true; }
+        ScoreboardManager sm = getManager();
+        if (sm == null) { return false; }
+        board = sm.getNewScoreboard();
+        objective = board.registerNewObjective("jumpgame", "dummy");
+        objective.setDisplaySlot(DisplaySlot.SIDEBAR);
+        objective.setDisplayName(shownTitle);
+        entries = new OfflinePlayer[LABELS.length];
+        for (int i = 0; i < LABELS.length; i++) {
+            entries[i] = plugin.getServer().getOfflinePlayer(ChatColor.GRAY + LABELS[i]);
+        }
+        markDirty();
+        return true;
+    }
+
+    private ScoreboardManager getManager() {
+        return plugin.getServer().getScoreboardManager();
+    }
+
+}
@@ -0,0 +1,76 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import org.bukkit.Location;
+
+/* A place jumpers are sent to jump from. An arena can have several,
+ * each used by one jumper at a time. Timeouts of 0 mean "use the game's
+ * timeout".
+ */
+public class JumpPlatform {
+
+    private Location location;
+    private int jumpTimeout;
+    private int exitPoolTimeout;
+
+    private int turns;
+    private int splashdowns;
+    private int misses;
+
+    public JumpPlatform(Location location, int jumpTimeout, int exitPoolTimeout) {
+        this.location = location;
+        this.jumpTimeout = jumpTimeout;
+        this.exitPoolTimeout = exitPoolTimeout;
+    }
+
+    public JumpPlatform(Location location) {
+        this(location, 0, 0);
+    }
+
+    public Location getLocation() { return location; }
+    public int getJumpTimeout() { return jumpTimeout; }
+    public int getExitPoolTimeout() { return exitPoolTimeout; }
+
+    public int getJumpTimeout(int gameDefault) {
+        return jumpTimeout > 0 ? jumpTimeout : gameDefault;
+    }
+
+    public int getExitPoolTimeout(int gameDefault) {
+        return exitPoolTimeout > 0 ? exitPoolTimeout : gameDefault;
+    }
+
+    /* Same place and timeouts; the stats don't count. */
+    public boolean isSame(JumpPlatform p) {
+        return location.equals(p.location)
+            && jumpTimeout == p.jumpTimeout
+            && exitPoolTimeout == p.exitPoolTimeout;
+    }
+
+    /* Stats since the server started. */
+
+    public int getTurns() { return turns; }
+    public int getSplashdowns() { return splashdowns; }
+    public int getMisses() { return misses; }
+
+    void countTurn() { turns += 1; }
+    void countSplashdown() { splashdowns += 1; }
+    void countMiss() { misses += 1; }
+
+}
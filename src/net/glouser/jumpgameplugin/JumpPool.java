@@ -19,74 +19,363 @@
 package net.glouser.jumpgameplugin;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.List;
+import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 
+/* The landing pool: one layer of water blocks.
+ *
+ * The pool is kept as packed x/z coordinates plus a world name and y,
+ * not as Block objects. Blocks are looked up in the world only while a
+ * game is using them, so loading the config doesn't load chunks or hold
+ * on to blocks for the life of the plugin.
+ */
 public class JumpPool {
 
     private static Material FILL_TYPE = Material.OBSIDIAN;
 
-    private List<Block> blocks;
+    // Upper bound on voxels visited by one sweep. A single move event
+    // never covers anywhere near this many blocks in normal play.
+    private static int MAX_SWEEP_STEPS = 256;
+
+    private Server server;
+    private String worldName;
+    private int poolY;
+    private long[] slots;
     private int fillCount;
+    private int resetNext;
+    private int checkNext;
+
+    // Index of pool columns, rebuilt whenever the pool changes.
+    // The pool is a single layer, so a 2D bitmap over its bounding
+    // box answers "is (x, y, z) a pool slot" without scanning slots.
+    private int minX;
+    private int minZ;
+    private int sizeX;
+    private int sizeZ;
+    private BitSet columns;
+    // Slots filled in by splashdowns, indexed the same way.
+    private BitSet filled;
+
+    public JumpPool(Server server) {
+        this.server = server;
+        this.slots = new long[0];
+        this.columns = new BitSet();
+        this.filled = new BitSet();
+    }
+
+    /* Set the pool from saved coordinates; xz holds x and z of each
+     * block in turn. Nothing is looked up in the world.
+     */
+    public void setCoords(String world, int y, int[] xz) {
+        worldName = world;
+        poolY = y;
+        slots = new long[(world == null) ? 0 : xz.length / 2];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = pack(xz[2 * i], xz[2 * i + 1]);
+        }
+        fillCount = 0;
+        resetNext = 0;
+        checkNext = 0;
+        buildIndex();
+    }
 
-    public JumpPool() {
-        this.blocks = new ArrayList<Block>();
+    public String getWorldName() {
+        return worldName;
     }
 
-    public void setBlocks(List<Block> bs) {
-        blocks = bs;
+    /* The pool's world, if it is loaded right now. */
+    public World getWorld() {
+        return (worldName == null) ? null : server.getWorld(worldName);
     }
 
-    public List<Block> getBlocks() {
-        return blocks;
+    public int getY() {
+        return poolY;
     }
 
     public int size() {
-        return blocks.size();
+        return slots.length;
+    }
+
+    public int getX(int i) {
+        return (int) (slots[i] >> 32);
+    }
+
+    public int getZ(int i) {
+        return (int) slots[i];
     }
 
     public void reset() {
-        for (Block b : blocks) {
-            b.setType(Material.STATIONARY_WATER);
+        resetStep(slots.length);
+    }
+
+    /* Start putting the water back a slice at a time with resetStep().
+     * A later reset() finishes off whatever is left.
+     */
+    public void beginReset() {
+        resetNext = 0;
+    }
+
+    /* Put back up to budget blocks. Returns true once the whole pool
+     * is water again.
+     */
+    public boolean resetStep(int budget) {
+        World world = getWorld();
+        if (world == null) {
+            // Nothing to put back until the world is loaded.
+            resetNext = slots.length;
+        }
+        int end = Math.min(slots.length, resetNext + budget);
+        while (resetNext < end) {
+            int i = resetNext++;
+            Block b = world.getBlockAt(getX(i), poolY, getZ(i));
+            if (b.getType() != Material.STATIONARY_WATER) {
+                b.setType(Material.STATIONARY_WATER);
+            }
+            filled.clear(index(getX(i), getZ(i)));
+        }
+        if (resetNext < slots.length) {
+            return false;
         }
         fillCount = 0;
+        resetNext = 0;
+        return true;
+    }
+
+    /* Compare up to budget pool slots with the world, carrying on from
+     * where the last call left off, and fix the ones that are wrong:
+     *
+     * - a slot that should be water but isn't (a block placed in it,
+     *   water taken out with a bucket, lava or flowing water in it) is
+     *   made water again
+     * - a filled slot with something other than the fill block in it,
+     *   other than water, gets the fill block back
+     * - a filled slot that has turned back into water (say, restored
+     *   from a snapshot) is counted as water again, so waterLeft() and
+     *   atFillLimit() stay true to the world
+     *
+     * Slots in chunks that aren't loaded are skipped rather than
+     * loaded. Returns the number of slots that were wrong.
+     */
+    public int checkStep(int budget) {
+        World world = getWorld();
+        if (world == null || slots.length == 0) {
+            return 0;
+        }
+        int wrong = 0;
+        int n = Math.min(budget, slots.length);
+        for (int k = 0; k < n; k++) {
+            if (checkNext >= slots.length) {
+                checkNext = 0;
+            }
+            int i = checkNext++;
+            int x = getX(i);
+            int z = getZ(i);
+            if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+                continue;
+            }
+            Block b = world.getBlockAt(x, poolY, z);
+            Material type = b.getType();
+            int bit = index(x, z);
+            if (!filled.get(bit)) {
+                if (type != Material.STATIONARY_WATER) {
+                    b.setType(Material.STATIONARY_WATER);
+                    wrong += 1;
+                }
+            } else if (type == Material.STATIONARY_WATER) {
+                filled.clear(bit);
+                fillCount -= 1;
+                wrong += 1;
+            } else if (type != FILL_TYPE) {
+                b.setType(FILL_TYPE);
+                wrong += 1;
+            }
+        }
+        return wrong;
     }
 
     public boolean isPoolWater(Block b) {
-        return b.getType() == Material.STATIONARY_WATER && blocks.contains(b);
+        return contains(b.getX(), b.getY(), b.getZ())
+            && b.getType() == Material.STATIONARY_WATER
+            && inPoolWorld(b.getWorld());
+    }
+
+    /* Find the first pool water block on the segment between two
+     * positions, or null if the segment never touches pool water.
+     * Walks every block the segment passes through (Amanatides-Woo
+     * voxel traversal), so a move event that skips from above the
+     * pool to below it (or back out) still registers the splashdown.
+     */
+    public Block findPoolWater(Location from, Location to) {
+        World world = from.getWorld();
+        if (slots.length == 0 || to.getWorld() != world || !inPoolWorld(world)) {
+            return null;
+        }
+        double x0 = from.getX(), y0 = from.getY(), z0 = from.getZ();
+        double dx = to.getX() - x0, dy = to.getY() - y0, dz = to.getZ() - z0;
+
+        // Cheap rejection: the segment must reach the pool layer.
+        if (Math.max(y0, y0 + dy) < poolY || Math.min(y0, y0 + dy) >= poolY + 1) {
+            return null;
+        }
+
+        int x = floor(x0), y = floor(y0), z = floor(z0);
+        int endX = floor(to.getX()), endY = floor(to.getY()), endZ = floor(to.getZ());
+        int stepX = (dx > 0) ? 1 : (dx < 0) ? -1 : 0;
+        int stepY = (dy > 0) ? 1 : (dy < 0) ? -1 : 0;
+        int stepZ = (dz > 0) ? 1 : (dz < 0) ? -1 : 0;
+        double tDeltaX = (stepX == 0) ? Double.MAX_VALUE : Math.abs(1 / dx);
+        double tDeltaY = (stepY == 0) ? Double.MAX_VALUE : Math.abs(1 / dy);
+        double tDeltaZ = (stepZ == 0) ? Double.MAX_VALUE : Math.abs(1 / dz);
+        double tMaxX = boundary(x0, x, stepX, tDeltaX);
+        double tMaxY = boundary(y0, y, stepY, tDeltaY);
+        double tMaxZ = boundary(z0, z, stepZ, tDeltaZ);
+
+        for (int i = 0; i < MAX_SWEEP_STEPS; i++) {
+            if (contains(x, y, z)) {
+                Block b = world.getBlockAt(x, y, z);
+                if (b.getType() == Material.STATIONARY_WATER) {
+                    return b;
+                }
+            }
+            if (x == endX && y == endY && z == endZ) {
+                break;
+            }
+            if (tMaxX < tMaxY && tMaxX < tMaxZ) {
+                if (tMaxX > 1) { break; }
+                x += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY < tMaxZ) {
+                if (tMaxY > 1) { break; }
+                y += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                if (tMaxZ > 1) { break; }
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+            }
+        }
+        return null;
+    }
+
+    public int waterLeft() {
+        return slots.length - fillCount;
     }
 
     public boolean atFillLimit() {
-        return fillCount >= blocks.size() - 1;
+        return fillCount >= slots.length - 1;
     }
 
     public void fillBlock(Block b) {
-        if (fillCount < blocks.size() - 1) {
+        // Already filled blocks don't count twice.
+        if (isPoolWater(b) && fillCount < slots.length - 1) {
             b.setType(FILL_TYPE);
-            fillCount += 1;
+            int bit = index(b.getX(), b.getZ());
+            if (!filled.get(bit)) {
+                // Not if it was filled before and has been water again
+                // since, without checkStep() noticing.
+                filled.set(bit);
+                fillCount += 1;
+            }
         }
     }
 
     public void buildPool(Block startBlock, int poolSizeLimit) {
-        blocks.clear();
-        fillCount = 0;
+        ArrayList<Long> found = new ArrayList<Long>();
+        HashSet<Long> seen = new HashSet<Long>();
         LinkedList<Block> pending = new LinkedList<Block>();
         pending.add(startBlock);
         while (pending.size() > 0) {
             Block b = pending.remove();
-            if (!blocks.contains(b) && b.getType() == Material.STATIONARY_WATER) {
-                if (blocks.size() >= poolSizeLimit) {
+            if (seen.add(pack(b.getX(), b.getZ()))
+                  && b.getType() == Material.STATIONARY_WATER) {
+                if (found.size() >= poolSizeLimit) {
                     break;
                 }
-                blocks.add(b);
+                found.add(pack(b.getX(), b.getZ()));
                 pending.add(b.getRelative(1, 0, 0));
                 pending.add(b.getRelative(-1, 0, 0));
                 pending.add(b.getRelative(0, 0, 1));
                 pending.add(b.getRelative(0, 0, -1));
             }
         }
+        worldName = startBlock.getWorld().getName();
+        poolY = startBlock.getY();
+        slots = new long[found.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = found.get(i);
+        }
+        fillCount = 0;
+        resetNext = 0;
+        checkNext = 0;
+        buildIndex();
+    }
+
+    private boolean inPoolWorld(World w) {
+        return w != null && w.getName().equals(worldName);
+    }
+
+    private boolean contains(int x, int y, int z) {
+        if (y != poolY) { return false; }
+        int ix = x - minX;
+        int iz = z - minZ;
+        if (ix < 0 || iz < 0 || ix >= sizeX || iz >= sizeZ) { return false; }
+        return columns.get(iz * sizeX + ix);
+    }
+
+    /* Position of a pool column in the bitmaps. */
+    private int index(int x, int z) {
+        return (z - minZ) * sizeX + (x - minX);
+    }
+
+    private void buildIndex() {
+        columns = new BitSet();
+        filled = new BitSet();
+        if (slots.length == 0) {
+            sizeX = sizeZ = 0;
+            return;
+        }
+        minX = getX(0);
+        minZ = getZ(0);
+        int maxX = minX;
+        int maxZ = minZ;
+        for (int i = 1; i < slots.length; i++) {
+            minX = Math.min(minX, getX(i));
+            minZ = Math.min(minZ, getZ(i));
+            maxX = Math.max(maxX, getX(i));
+            maxZ = Math.max(maxZ, getZ(i));
+        }
+        sizeX = maxX - minX + 1;
+        sizeZ = maxZ - minZ + 1;
+        for (int i = 0; i < slots.length; i++) {
+            columns.set(index(getX(i), getZ(i)));
+        }
+    }
+
+    private static long pack(int x, int z) {
+        return ((long) x << 32) | (z & 0xffffffffL);
+    }
+
+    private static int floor(double d) {
+        int i = (int) d;
+        return (d < i) ? i - 1 : i;
+    }
+
+    /* Parametric distance along the segment to the first voxel
+     * boundary crossed on one axis.
+     */
+    private static double boundary(double start, int cell, int step, double tDelta) {
+        if (step > 0) {
+            return (cell + 1 - start) * tDelta;
+        } else if (step < 0) {
+            return (start - cell) * tDelta;
+        }
+        return Double.MAX_VALUE;
     }
 
 }
@@ -0,0 +1,89 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* How long turns take, for tuning the timeouts.
+ *
+ * - platform time: from arriving on the jump platform to splashing down
+ *   (or dying). Compare with jumpTimeout.
+ * - exit time: from splashing down to getting out of the pool on one's
+ *   own. Compare with exitPoolTimeout.
+ *
+ * Turns cut short by a timeout aren't in the times, since we never see
+ * how long they would have taken; they are counted instead. Everything
+ * here is since the server started or the last clear().
+ */
+public class JumpTelemetry {
+
+    private QuantileSketch platformTime;
+    private QuantileSketch exitTime;
+    private long softTimeouts;
+    private long hardTimeouts;
+    private long forcedExits;
+
+    public JumpTelemetry() {
+        platformTime = new QuantileSketch();
+        exitTime = new QuantileSketch();
+    }
+
+    public void clear() {
+        platformTime.clear();
+        exitTime.clear();
+        softTimeouts = 0;
+        hardTimeouts = 0;
+        forcedExits = 0;
+    }
+
+    public void platformTime(long millis) { platformTime.add(millis); }
+    public void exitTime(long millis) { exitTime.add(millis); }
+    public void softTimeout() { softTimeouts += 1; }
+    public void hardTimeout() { hardTimeouts += 1; }
+    public void forcedExit() { forcedExits += 1; }
+
+    /* One line per item, ready for chat or a file.
+     */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<String>();
+        lines.add(describe("Platform time", platformTime));
+        lines.add(describe("Exit time", exitTime));
+        lines.add("Soft jump timeouts: " + softTimeouts
+            + ", hard jump timeouts: " + hardTimeouts
+            + ", forced pool exits: " + forcedExits);
+        return lines;
+    }
+
+    private static String describe(String label, QuantileSketch s) {
+        if (s.getCount() == 0) {
+            return label + ": no data";
+        }
+        return label + " (" + s.getCount() + " turns): "
+            + "p50 " + seconds(s.quantile(0.5))
+            + ", p90 " + seconds(s.quantile(0.9))
+            + ", p99 " + seconds(s.quantile(0.99))
+            + ", max " + seconds(s.getMax());
+    }
+
+    private static String seconds(long millis) {
+        return String.format("%.1fs", millis / 1000.0);
+    }
+
+}
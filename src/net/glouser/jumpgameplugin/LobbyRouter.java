@@ -0,0 +1,184 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/* One server in a network of jump game servers behind a proxy.
+ *
+ * Every node publishes its status (arena free or not, players waiting,
+ * player limit) over a NodeTransport every few ticks and keeps the
+ * latest status heard from each of the others. A lobby node also sends
+ * players who press its join button to the node with a free arena and
+ * the fewest players waiting, using the proxy's "Connect" plugin
+ * message. Node names must match the server names the proxy uses.
+ */
+public class LobbyRouter implements NodeTransport.Receiver {
+
+    private static String PROXY_CHANNEL = "BungeeCord";
+
+    // A node that hasn't been heard from in this many publish periods
+    // is assumed to be down.
+    private static int STALE_PERIODS = 3;
+
+    private Plugin plugin;
+    private Platform platform;
+    private JumpGame game;
+    private NodeTransport transport;
+    private String name;
+    private boolean lobby;
+    private int periodTicks;
+    private ConcurrentHashMap<String, NodeStatus> nodes;
+    private Platform.Task publishTask;
+
+    public LobbyRouter(Plugin plugin, Platform platform, JumpGame game,
+                       NodeTransport transport, String name, boolean lobby) {
+        this.plugin = plugin;
+        this.platform = platform;
+        this.game = game;
+        this.transport = transport;
+        this.name = name;
+        this.lobby = lobby;
+        nodes = new ConcurrentHashMap<String, NodeStatus>();
+        periodTicks = 20;
+    }
+
+    public void setPublishTicks(int ticks) {
+        periodTicks = Math.max(1, ticks);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isLobby() {
+        return lobby;
+    }
+
+    public void start() throws IOException {
+        transport.start(this);
+        if (lobby) {
+            plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, PROXY_CHANNEL);
+        }
+        final Runnable publish = new Runnable() {
+            public void run() {
+                transport.publish(ownStatus());
+            }
+        };
+        publishTask = platform.runTimer(null, new Runnable() {
+            public void run() {
+                game.execute(publish);
+            }
+        }, 1, periodTicks);
+    }
+
+    public void stop() {
+        if (publishTask != null) {
+            publishTask.cancel();
+            publishTask = null;
+        }
+        transport.close();
+        if (lobby) {
+            plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin);
+        }
+        nodes.clear();
+    }
+
+    public void received(NodeStatus status) {
+        if (!status.getName().equals(name)) {
+            status.setReceived(System.currentTimeMillis());
+            nodes.put(status.getName(), status);
+        }
+    }
+
+    /* This node and every other node heard from recently, by name.
+     * Runs on the game's thread.
+     */
+    public List<NodeStatus> getNodes() {
+        List<NodeStatus> result = new ArrayList<NodeStatus>();
+        result.add(ownStatus());
+        long cutoff = System.currentTimeMillis() - STALE_PERIODS * periodTicks * 50L;
+        for (NodeStatus s : nodes.values()) {
+            if (s.getReceived() >= cutoff) {
+                result.add(s);
+            }
+        }
+        Collections.sort(result, new Comparator<NodeStatus>() {
+            public int compare(NodeStatus a, NodeStatus b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return result;
+    }
+
+    /* Find the node a player who wants to join should play on, and send
+     * them there. Returns the name of that node, or null if the player
+     * should join the game here: this isn't a lobby, this node is the
+     * best choice, or no node has room. Runs on the game's thread.
+     */
+    public String route(Player p) {
+        if (!lobby) {
+            return null;
+        }
+        NodeStatus best = null;
+        for (NodeStatus s : getNodes()) {
+            if (s.hasRoom() && (best == null || s.getPlayers() < best.getPlayers()
+                  || (s.getPlayers() == best.getPlayers() && s.getName().equals(name)))) {
+                best = s;
+            }
+        }
+        if (best == null || best.getName().equals(name)) {
+            return null;
+        }
+        if (!connect(p, best.getName())) {
+            return null;
+        }
+        // Count the player there until that node says so itself, so a
+        // rush of joins isn't all sent to the same place.
+        nodes.replace(best.getName(), best, best.plusOne());
+        return best.getName();
+    }
+
+    private NodeStatus ownStatus() {
+        return new NodeStatus(name, !game.gameInProgress(), game.getPlayers().size(), game.getMaxPlayers());
+    }
+
+    private boolean connect(Player p, String server) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeUTF("Connect");
+            out.writeUTF(server);
+        } catch (IOException e) {
+            return false;
+        }
+        p.sendPluginMessage(plugin, PROXY_CHANNEL, bytes.toByteArray());
+        return true;
+    }
+
+}
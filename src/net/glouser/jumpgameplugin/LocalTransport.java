@@ -0,0 +1,60 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/* Connects nodes running in the same JVM, such as several plugin
+ * instances in a test harness. Statuses are handed straight to the
+ * other nodes' receivers on the publishing thread.
+ */
+public class LocalTransport implements NodeTransport {
+
+    private static List<LocalTransport> nodes = new CopyOnWriteArrayList<LocalTransport>();
+
+    private volatile Receiver receiver;
+
+    public String getName() {
+        return "local";
+    }
+
+    public void start(Receiver receiver) {
+        this.receiver = receiver;
+        nodes.add(this);
+    }
+
+    public void publish(NodeStatus status) {
+        String line = status.encode();
+        for (LocalTransport t : nodes) {
+            Receiver r = t.receiver;
+            if (t != this && r != null) {
+                // Each node gets its own copy, as if it came over the
+                // wire.
+                r.received(NodeStatus.decode(line));
+            }
+        }
+    }
+
+    public void close() {
+        nodes.remove(this);
+        receiver = null;
+    }
+
+}
@@ -0,0 +1,112 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.logging.Logger;
+
+/* Connects servers on the same machine with UDP datagrams on the
+ * loopback interface. Each node listens on its own port and sends its
+ * status to the ports of all the others.
+ */
+public class LoopbackTransport implements NodeTransport {
+
+    private static Charset UTF8 = Charset.forName("UTF-8");
+    private static int MAX_PACKET = 512;
+
+    private Logger log;
+    private int port;
+    private List<Integer> peers;
+    private InetAddress loopback;
+    private volatile DatagramSocket socket;
+    private Thread thread;
+
+    public LoopbackTransport(Logger log, int port, List<Integer> peers) {
+        this.log = log;
+        this.port = port;
+        this.peers = peers;
+    }
+
+    public String getName() {
+        return "loopback port " + port;
+    }
+
+    public void start(final Receiver receiver) throws IOException {
+        loopback = InetAddress.getByName("127.0.0.1");
+        socket = new DatagramSocket(new InetSocketAddress(loopback, port));
+        thread = new Thread(new Runnable() {
+            public void run() {
+                listen(receiver);
+            }
+        }, "JumpGame-lobby");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void publish(NodeStatus status) {
+        DatagramSocket s = socket;
+        if (s == null) {
+            return;
+        }
+        byte[] data = status.encode().getBytes(UTF8);
+        for (int peer : peers) {
+            try {
+                s.send(new DatagramPacket(data, data.length, loopback, peer));
+            } catch (IOException e) {
+                // Nobody listening there yet; they'll get the next one.
+            }
+        }
+    }
+
+    public void close() {
+        if (socket != null) {
+            // Unblocks the receive in listen().
+            socket.close();
+            socket = null;
+        }
+    }
+
+    private void listen(Receiver receiver) {
+        DatagramSocket s = socket;
+        byte[] buf = new byte[MAX_PACKET];
+        while (!s.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            try {
+                s.receive(packet);
+            } catch (IOException e) {
+                if (!s.isClosed()) {
+                    log.warning("Lobby transport stopped: " + e);
+                }
+                return;
+            }
+            NodeStatus status = NodeStatus.decode(
+                new String(packet.getData(), 0, packet.getLength(), UTF8));
+            if (status != null) {
+                receiver.received(status);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+
+/* Case-insensitive prefix tree from names to values, kept up to date
+ * one name at a time. Looking up or completing a prefix only visits the
+ * prefix and the names under it, not every name in the tree.
+ *
+ * Players come and go on their own threads on region-threaded servers,
+ * so all methods are synchronized.
+ */
+public class NameTrie<V> {
+
+    private static class Node<V> {
+        TreeMap<Character, Node<V>> children = new TreeMap<Character, Node<V>>();
+        String name;
+        V value;
+    }
+
+    private Node<V> root;
+
+    public NameTrie() {
+        root = new Node<V>();
+    }
+
+    public synchronized void put(String name, V value) {
+        Node<V> n = root;
+        String key = name.toLowerCase();
+        for (int i = 0; i < key.length(); i++) {
+            Character c = key.charAt(i);
+            Node<V> child = n.children.get(c);
+            if (child == null) {
+                child = new Node<V>();
+                n.children.put(c, child);
+            }
+            n = child;
+        }
+        n.name = name;
+        n.value = value;
+    }
+
+    public synchronized void remove(String name) {
+        remove(root, name.toLowerCase(), 0);
+    }
+
+    /* Returns true if n is now empty and can be dropped. */
+    private boolean remove(Node<V> n, String key, int depth) {
+        if (depth == key.length()) {
+            n.name = null;
+            n.value = null;
+        } else {
+            Character c = key.charAt(depth);
+            Node<V> child = n.children.get(c);
+            if (child != null && remove(child, key, depth + 1)) {
+                n.children.remove(c);
+            }
+        }
+        return n.name == null && n.children.isEmpty();
+    }
+
+    /* The value for a name, or failing that, for the shortest name that
+     * starts with it (like Server.getPlayer).
+     */
+    public synchronized V match(String prefix) {
+        Node<V> n = find(prefix);
+        if (n == null) {
+            return null;
+        }
+        // Breadth first, so shorter names come first.
+        LinkedList<Node<V>> queue = new LinkedList<Node<V>>();
+        queue.add(n);
+        while (!queue.isEmpty()) {
+            Node<V> m = queue.removeFirst();
+            if (m.name != null) {
+                return m.value;
+            }
+            queue.addAll(m.children.values());
+        }
+        return null;
+    }
+
+    /* Up to limit names starting with prefix, in alphabetical order.
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        List<String> names = new ArrayList<String>();
+        Node<V> n = find(prefix);
+        if (n != null) {
+            collect(n, names, limit);
+        }
+        return names;
+    }
+
+    private void collect(Node<V> n, List<String> names, int limit) {
+        if (names.size() >= limit) {
+            return;
+        }
+        if (n.name != null) {
+            names.add(n.name);
+        }
+        for (Node<V> child : n.children.values()) {
+            collect(child, names, limit);
+        }
+    }
+
+    private Node<V> find(String prefix) {
+        Node<V> n = root;
+        String key = prefix.toLowerCase();
+        for (int i = 0; i < key.length() && n != null; i++) {
+            n = n.children.get(key.charAt(i));
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,91 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+/* What one server in a jump game network tells the others: whether its
+ * arena is taking players, and how many are queued for the next game.
+ * Sent as a single line of tab-separated text.
+ */
+public class NodeStatus {
+
+    private String name;
+    private boolean open;
+    private int players;
+    private int maxPlayers;
+    private long received;
+
+    public NodeStatus(String name, boolean open, int players, int maxPlayers) {
+        this.name = name;
+        this.open = open;
+        this.players = players;
+        this.maxPlayers = maxPlayers;
+    }
+
+    public String getName() { return name; }
+    public boolean isOpen() { return open; }
+    public int getPlayers() { return players; }
+    public int getMaxPlayers() { return maxPlayers; }
+
+    /* When this status arrived, in System.currentTimeMillis() terms.
+     */
+    public long getReceived() { return received; }
+
+    public void setReceived(long millis) {
+        received = millis;
+    }
+
+    /* The arena is free and there is room for another player.
+     */
+    public boolean hasRoom() {
+        return open && (maxPlayers <= 0 || players < maxPlayers);
+    }
+
+    /* The same status with one more player, for a player who has been
+     * sent there but isn't counted in its status yet.
+     */
+    public NodeStatus plusOne() {
+        NodeStatus s = new NodeStatus(name, open, players + 1, maxPlayers);
+        s.received = received;
+        return s;
+    }
+
+    public String encode() {
+        return name + "\t" + (open ? "open" : "busy") + "\t" + players + "\t" + maxPlayers;
+    }
+
+    /* Returns null if the line is not a status.
+     */
+    public static NodeStatus decode(String line) {
+        String[] parts = line.split("\t");
+        if (parts.length != 4 || parts[0].length() == 0) {
+            return null;
+        }
+        try {
+            return new NodeStatus(parts[0], parts[1].equals("open"),
+                                  Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String toString() {
+        return encode().replace('\t', ' ');
+    }
+
+}
@@ -0,0 +1,43 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.io.IOException;
+
+/* How the servers in a jump game network hear about each other.
+ * Statuses are small and sent often, so a lost one does no harm; a
+ * transport doesn't need to be reliable.
+ */
+public interface NodeTransport {
+
+    interface Receiver {
+        /* May be called on any thread. */
+        void received(NodeStatus status);
+    }
+
+    String getName();
+
+    void start(Receiver receiver) throws IOException;
+
+    /* Send this server's status to the others. */
+    void publish(NodeStatus status);
+
+    void close();
+
+}
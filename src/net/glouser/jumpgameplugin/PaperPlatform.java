@@ -0,0 +1,174 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/* Paper servers can load chunks and teleport without blocking the
+ * main thread, and can keep chunks loaded with plugin chunk tickets.
+ * Paper completes its futures on the main thread, so callbacks can
+ * touch game state directly. The methods are looked up by reflection,
+ * since they aren't part of the Bukkit API we build against. The Java 8
+ * types they use (CompletableFuture and the java.util.function
+ * callbacks) are only reached by reflection too, so this class still
+ * loads on Java 6 and 7 and just reports itself unsupported there.
+ */
+public class PaperPlatform extends BukkitPlatform {
+
+    private static String FUTURE_CLASS = "java.util.concurrent.CompletableFuture";
+    private static String BICONSUMER_CLASS = "java.util.function.BiConsumer";
+    private static Class<?> biConsumer = findClass(BICONSUMER_CLASS);
+    private static Method whenComplete = (biConsumer == null) ? null
+        : findMethod(findClass(FUTURE_CLASS), FUTURE_CLASS, "whenComplete", biConsumer);
+    private static Method teleportAsync = findMethod(Entity.class, FUTURE_CLASS,
+        "teleportAsync", Location.class);
+    private static Method getChunkAtAsync = findMethod(World.class, FUTURE_CLASS,
+        "getChunkAtAsync", int.class, int.class);
+    private static Method addTicket = findMethod(World.class, "boolean",
+        "addPluginChunkTicket", int.class, int.class, Plugin.class);
+    private static Method removeTicket = findMethod(World.class, "boolean",
+        "removePluginChunkTicket", int.class, int.class, Plugin.class);
+
+    public PaperPlatform(Plugin plugin) {
+        super(plugin);
+    }
+
+    public static boolean isSupported() {
+        return teleportAsync != null && getChunkAtAsync != null && whenComplete != null;
+    }
+
+    @Override
+    public String getName() {
+        return "Paper";
+    }
+
+    @Override
+    public void teleport(Player p, Location dest, Location home, Runnable then) {
+        Object f = invoke(teleportAsync, p, dest);
+        if (f == null) {
+            super.teleport(p, dest, home, then);
+            return;
+        }
+        invoke(whenComplete, f, completion(home, then));
+    }
+
+    @Override
+    public void loadChunk(World w, int cx, int cz) {
+        if (w.isChunkLoaded(cx, cz)) { return; }
+        if (invoke(getChunkAtAsync, w, cx, cz) == null) {
+            super.loadChunk(w, cx, cz);
+        }
+    }
+
+    @Override
+    public boolean addChunkTicket(World w, int cx, int cz) {
+        return addTicket != null && removeTicket != null
+            && invoke(addTicket, w, cx, cz, plugin) != null;
+    }
+
+    @Override
+    public void removeChunkTicket(World w, int cx, int cz) {
+        if (removeTicket != null) {
+            invoke(removeTicket, w, cx, cz, plugin);
+        }
+    }
+
+    /* Callback (a BiConsumer) for a finished teleport. Runs then on
+     * home's thread.
+     */
+    protected Object completion(final Location home, final Runnable then) {
+        return callback(biConsumer, new Callback() {
+            public void call(Object[] args) {
+                Object error = args[1];
+                if (error != null) {
+                    plugin.getLogger().warning("Async teleport failed: " + error);
+                }
+                if (then != null) {
+                    execute(home, then);
+                }
+            }
+        });
+    }
+
+    protected interface Callback {
+        void call(Object[] args);
+    }
+
+    /* An implementation of the single-method interface iface that
+     * passes the arguments of each call to cb.
+     */
+    protected static Object callback(Class<?> iface, final Callback cb) {
+        InvocationHandler h = new InvocationHandler() {
+            public Object invoke(Object proxy, Method m, Object[] args) {
+                if (m.getDeclaringClass() == Object.class) {
+                    if (m.getName().equals("equals")) {
+                        return proxy == args[0];
+                    } else if (m.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    return "callback@" + Integer.toHexString(System.identityHashCode(proxy));
+                }
+                cb.call(args);
+                return null;
+            }
+        };
+        return Proxy.newProxyInstance(PaperPlatform.class.getClassLoader(),
+                                      new Class<?>[] { iface }, h);
+    }
+
+    protected Object invoke(Method m, Object target, Object... args) {
+        try {
+            return m.invoke(target, args);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Call to " + m.getName() + " failed: " + e);
+            return null;
+        }
+    }
+
+    /* Compares the return type by name, so that looking up a method
+     * never loads a class this Java version doesn't have.
+     */
+    protected static Method findMethod(Class<?> c, String returnType, String name, Class<?>... params) {
+        if (c == null) {
+            return null;
+        }
+        try {
+            Method m = c.getMethod(name, params);
+            return returnType.equals(m.getReturnType().getName()) ? m : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    protected static Class<?> findClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/* Server operations that differ between server implementations.
+ * The game goes through this interface so it can use non-blocking
+ * teleports and chunk loads where they exist, and so it can run on
+ * region-threaded servers (Folia), where there is no single main
+ * thread.
+ *
+ * Methods that take a "home" location run their work on the thread
+ * that owns that location: the main thread on ordinary servers, the
+ * owning region's thread on Folia. A null home means the main thread
+ * (the global region on Folia).
+ */
+public interface Platform {
+
+    interface Task {
+        void cancel();
+    }
+
+    String getName();
+
+    /* True if there is no single main thread. Some Bukkit APIs (like
+     * scoreboards) aren't available on such servers.
+     */
+    boolean isRegionThreaded();
+
+    boolean isOwnedByCurrentThread(Location home);
+
+    /* Run now if the current thread owns home, otherwise as soon as
+     * possible on the thread that does.
+     */
+    void execute(Location home, Runnable r);
+
+    Task runLater(Location home, Runnable r, long delayTicks);
+
+    Task runTimer(Location home, Runnable r, long delayTicks, long periodTicks);
+
+    /* Run on the thread that owns a player.
+     */
+    void runFor(Player p, Runnable r);
+
+    /* Teleport a player, then run a callback on the thread that owns
+     * home once the teleport has happened (or failed).
+     */
+    void teleport(Player p, Location dest, Location home, Runnable then);
+
+    /* Make sure a chunk is loaded, or is being loaded.
+     */
+    void loadChunk(World w, int cx, int cz);
+
+    /* Ask the server to keep a chunk loaded. Returns false if the
+     * server has no way to do this, in which case the caller has to
+     * hold the chunk some other way.
+     */
+    boolean addChunkTicket(World w, int cx, int cz);
+
+    void removeChunkTicket(World w, int cx, int cz);
+
+}
@@ -0,0 +1,93 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+/* Approximate quantiles of a stream of durations in fixed memory.
+ *
+ * Values go into buckets whose bounds grow geometrically by GAMMA, so
+ * any quantile read back is within about 2% of a value that was really
+ * recorded. NUM_BUCKETS covers 1 ms up to over an hour; anything
+ * outside that range lands in the first or last bucket.
+ */
+public class QuantileSketch {
+
+    private static double ACCURACY = 0.02;
+    private static double GAMMA = (1 + ACCURACY) / (1 - ACCURACY);
+    private static double LOG_GAMMA = Math.log(GAMMA);
+    private static int NUM_BUCKETS = 400;
+
+    private int[] counts;
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    public QuantileSketch() {
+        counts = new int[NUM_BUCKETS];
+        clear();
+    }
+
+    public void clear() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public void add(long millis) {
+        long v = Math.max(1, millis);
+        int i = (int) Math.ceil(Math.log(v) / LOG_GAMMA);
+        counts[Math.min(NUM_BUCKETS - 1, i)] += 1;
+        count += 1;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    public long getCount() { return count; }
+    public long getMin() { return count == 0 ? 0 : min; }
+    public long getMax() { return max; }
+
+    public long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /* The value at quantile q (0 to 1), or 0 if nothing was recorded.
+     */
+    public long quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                // Middle of the bucket, clamped to what was really seen.
+                long v = Math.round(2 * Math.pow(GAMMA, i) / (GAMMA + 1));
+                return Math.max(getMin(), Math.min(max, v));
+            }
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,236 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.Vector;
+
+/* Records jumpers' paths and plays them back.
+ *
+ * Trajectory buffers come from a small free list so a turn doesn't
+ * allocate while the jumper is moving. Finished recordings are kept in
+ * memory for /jumpReplay and appended to replays.dat on a background
+ * thread. When the file gets bigger than maxFileBytes it is moved to
+ * replays.old.dat and a new one is started.
+ *
+ * Playback moves a dropped wool block along the path, one sample per
+ * tick.
+ */
+public class ReplayRecorder {
+
+    public static class Recording {
+        private String player;
+        private String world;
+        private long when;
+        private boolean splashdown;
+        private int ticks;
+        private byte[] data;
+
+        public String getPlayer() { return player; }
+        public boolean isSplashdown() { return splashdown; }
+        public int getTicks() { return ticks; }
+    }
+
+    private static int MAGIC = 0x4a475250; // "JGRP"
+    private static int VERSION = 1;
+    private static int BUFFER_SIZE = 8192;
+    private static int MAX_FREE = 8;
+    private static int MAX_RECENT = 32;
+
+    private Plugin plugin;
+    private Platform platform;
+    private File file;
+    private long maxFileBytes;
+    private LinkedList<Trajectory> free;
+    private LinkedList<Recording> recent;
+    private ExecutorService writer;
+    private Platform.Task playTask;
+    private Item marker;
+
+    public ReplayRecorder(Plugin plugin, Platform platform) {
+        this.plugin = plugin;
+        this.platform = platform;
+        file = new File(plugin.getDataFolder(), "replays.dat");
+        maxFileBytes = 1024 * 1024;
+        free = new LinkedList<Trajectory>();
+        recent = new LinkedList<Recording>();
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "JumpGame-replay");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /* 0 keeps recordings in memory only. */
+    public void setMaxFileBytes(long bytes) {
+        maxFileBytes = bytes;
+    }
+
+    public void close() {
+        stopPlayback();
+        writer.shutdown();
+    }
+
+    public Trajectory begin(long millis, Location at) {
+        Trajectory t = free.isEmpty() ? new Trajectory(BUFFER_SIZE) : free.removeFirst();
+        t.start(millis);
+        t.add(millis, at);
+        return t;
+    }
+
+    public void discard(Trajectory t) {
+        if (free.size() < MAX_FREE) {
+            free.addLast(t);
+        }
+    }
+
+    public void finish(Player p, Trajectory t, boolean splashdown) {
+        final Recording r = new Recording();
+        r.player = p.getName();
+        r.world = p.getWorld().getName();
+        r.when = System.currentTimeMillis();
+        r.splashdown = splashdown;
+        r.ticks = t.getTicks();
+        r.data = t.toBytes();
+        discard(t);
+
+        recent.addLast(r);
+        if (recent.size() > MAX_RECENT) {
+            recent.removeFirst();
+        }
+        if (maxFileBytes > 0) {
+            writer.execute(new Runnable() {
+                public void run() {
+                    append(r);
+                }
+            });
+        }
+    }
+
+    /* The latest recording for a player, or the latest of all if name
+     * is null.
+     */
+    public Recording find(String name) {
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            Recording r = recent.get(i);
+            if (name == null || r.player.equalsIgnoreCase(name)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    /* Play a recording back with a marker that runs along the path.
+     * The marker is moved on the thread that owns home.
+     */
+    public boolean play(Recording r, Location home) {
+        final World world = plugin.getServer().getWorld(r.world);
+        if (world == null) {
+            return false;
+        }
+        stopPlayback();
+        final Trajectory.Reader reader = new Trajectory.Reader(r.data);
+        if (!reader.next()) {
+            return false;
+        }
+        final Location start = new Location(world, reader.getX(), reader.getY(), reader.getZ());
+        marker = world.dropItem(start, new ItemStack(Material.WOOL));
+        marker.setPickupDelay(Integer.MAX_VALUE);
+        Runnable step = new Runnable() {
+            private int tick = 0;
+            private Location pos = start;
+            // The reader stays one sample ahead of the marker.
+            private boolean more = reader.next();
+            public void run() {
+                if (!more || marker == null || !marker.isValid()) {
+                    stopPlayback();
+                    return;
+                }
+                tick += 1;
+                while (more && reader.getTick() <= tick) {
+                    pos = new Location(world, reader.getX(), reader.getY(), reader.getZ());
+                    more = reader.next();
+                }
+                // Moved every tick, even when the jumper stood still, so
+                // the marker doesn't drop.
+                marker.teleport(pos);
+                marker.setVelocity(new Vector());
+            }
+        };
+        playTask = platform.runTimer(home, step, 1, 1);
+        return true;
+    }
+
+    public void stopPlayback() {
+        if (playTask != null) {
+            playTask.cancel();
+            playTask = null;
+        }
+        if (marker != null) {
+            marker.remove();
+            marker = null;
+        }
+    }
+
+    /* Runs on the writer thread. */
+    private void append(Recording r) {
+        try {
+            if (file.length() > maxFileBytes) {
+                File old = new File(file.getParentFile(), "replays.old.dat");
+                old.delete();
+                file.renameTo(old);
+            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, true)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(r.when);
+                out.writeUTF(r.player);
+                out.writeUTF(r.world);
+                out.writeBoolean(r.splashdown);
+                out.writeInt(r.ticks);
+                out.writeInt(r.data.length);
+                out.write(r.data);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not save replay: " + e.getMessage());
+        }
+    }
+
+}
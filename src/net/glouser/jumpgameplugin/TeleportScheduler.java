@@ -0,0 +1,143 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.LinkedList;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+/* Spreads teleports over several ticks so that moving a large group
+ * of players doesn't send every teleport and tracking update in the
+ * same tick. At most teleportsPerTick teleports are started each tick.
+ * Urgent requests (like the next jumper) jump the queue, in the order
+ * they were made, and a callback can be attached to find out when a
+ * teleport has happened.
+ * On platforms with asynchronous teleports the callback may run a few
+ * ticks after the teleport was started.
+ */
+public class TeleportScheduler {
+
+    public interface Callback {
+        void done();
+    }
+
+    private static class Request {
+        Player player;
+        Location dest;
+        Callback callback;
+
+        Request(Player player, Location dest, Callback callback) {
+            this.player = player;
+            this.dest = dest;
+            this.callback = callback;
+        }
+    }
+
+    private Platform platform;
+    private Location home;
+    private int teleportsPerTick;
+    private LinkedList<Request> queue;
+    // How many requests at the front of the queue are urgent.
+    private int urgent;
+    private int sentThisTick;
+    private Platform.Task tickTask;
+
+    public TeleportScheduler(Platform platform) {
+        this.platform = platform;
+        teleportsPerTick = 1;
+        queue = new LinkedList<Request>();
+    }
+
+    /* Callbacks and the pacing timer run on the thread that owns this
+     * location (see Platform).
+     */
+    public void setHome(Location l) {
+        home = l;
+    }
+
+    public void setTeleportsPerTick(int n) {
+        teleportsPerTick = Math.max(1, n);
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    /* Queue a teleport behind everything already waiting.
+     */
+    public void teleport(Player p, Location dest, Callback cb) {
+        queue.addLast(new Request(p, dest, cb));
+        drain();
+    }
+
+    /* Queue a teleport ahead of everything queued with teleport(), but
+     * behind other urgent teleports still waiting. If this tick's
+     * budget has not been used up, it happens immediately.
+     */
+    public void teleportFirst(Player p, Location dest, Callback cb) {
+        queue.add(urgent, new Request(p, dest, cb));
+        urgent += 1;
+        drain();
+    }
+
+    /* Drop all pending teleports without running their callbacks.
+     */
+    public void clear() {
+        queue.clear();
+        urgent = 0;
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        sentThisTick = 0;
+    }
+
+    private void drain() {
+        while (sentThisTick < teleportsPerTick && queue.size() > 0) {
+            Request r = queue.removeFirst();
+            if (urgent > 0) {
+                urgent -= 1;
+            }
+            // Players who have logged off since being queued are skipped.
+            if (r.player.isOnline()) {
+                final Callback cb = r.callback;
+                platform.teleport(r.player, r.dest, home, (cb == null) ? null : new Runnable() {
+                    public void run() {
+                        cb.done();
+                    }
+                });
+                sentThisTick += 1;
+            }
+        }
+        if (tickTask == null && sentThisTick > 0) {
+            Runnable r = new Runnable() {
+                public void run() {
+                    sentThisTick = 0;
+                    drain();
+                    if (tickTask != null && queue.size() == 0 && sentThisTick == 0) {
+                        tickTask.cancel();
+                        tickTask = null;
+                    }
+                }
+            };
+            tickTask = platform.runTimer(home, r, 1, 1);
+        }
+    }
+
+}
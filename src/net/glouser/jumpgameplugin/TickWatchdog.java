@@ -0,0 +1,255 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.bukkit.Location;
+
+/* Keeps an arena from making a struggling server worse.
+ *
+ * The game reports how long its handlers and timers take (begin() and
+ * end()), and a timer adds that up per tick. The same timer measures
+ * how far apart ticks are to estimate the server's TPS. While this
+ * tick's total is over the budget, or TPS is under the minimum, the
+ * watchdog is shedding: work that can wait (messages for spectators,
+ * scoreboard refreshes) is queued and done on a later tick that has
+ * time for it, in the order it came in, and bulk block work that is
+ * done a slice per tick skips its slice. Nothing queued waits more
+ * than a few seconds, however bad things get.
+ *
+ * Only work that can't change the outcome of a game belongs here.
+ *
+ * Runs on the thread that owns the arena (see Platform). The counters
+ * can be read from any thread.
+ */
+public class TickWatchdog {
+
+    public enum Work {
+        MESSAGE,
+        HUD,
+        BLOCKS,
+    }
+
+    private static class Deferred {
+        Work kind;
+        Runnable task;
+        long tick;
+
+        Deferred(Work kind, Runnable task, long tick) {
+            this.kind = kind;
+            this.task = task;
+            this.tick = tick;
+        }
+    }
+
+    // TPS is averaged over this many ticks.
+    private static int TPS_WINDOW = 20;
+
+    // Queued work runs after this many ticks even if still shedding.
+    private static int MAX_DEFER_TICKS = 100;
+
+    private Platform platform;
+    private Platform.Task tickTask;
+    private long budgetNanos;
+    private double minTps;
+    private long spent;
+    private long lastTick;
+    private long[] intervals;
+    private long intervalSum;
+    private int intervalCount;
+    private LinkedList<Deferred> deferred;
+
+    private volatile double tps;
+    private volatile long ticks;
+    private volatile long ticksOverBudget;
+    private volatile long ticksLowTps;
+    private AtomicLongArray shed;
+
+    public TickWatchdog(Platform platform) {
+        this.platform = platform;
+        intervals = new long[TPS_WINDOW];
+        deferred = new LinkedList<Deferred>();
+        shed = new AtomicLongArray(Work.values().length);
+        tps = 20;
+    }
+
+    /* Most time the game may spend per tick before shedding, and the
+     * TPS under which it always sheds. 0 turns either check off.
+     */
+    public void setBudget(double millis, double minTps) {
+        budgetNanos = (long) (Math.max(0, millis) * 1000000);
+        this.minTps = Math.max(0, minTps);
+    }
+
+    /* Start counting ticks on the thread that owns home. Restarts if
+     * already running.
+     */
+    public void start(Location home) {
+        stop();
+        Runnable r = new Runnable() {
+            public void run() {
+                tick();
+            }
+        };
+        tickTask = platform.runTimer(home, r, 1, 1);
+    }
+
+    /* Stop, and drop anything still queued. */
+    public void stop() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        deferred.clear();
+        spent = 0;
+        lastTick = 0;
+        Arrays.fill(intervals, 0);
+        intervalSum = 0;
+        intervalCount = 0;
+        tps = 20;
+    }
+
+    /* Call before some game work, and pass the result to end() after.
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    public void end(long began) {
+        spent += System.nanoTime() - began;
+    }
+
+    public boolean isShedding() {
+        return tickTask != null
+            && ((budgetNanos > 0 && spent >= budgetNanos)
+                || (minTps > 0 && tps < minTps));
+    }
+
+    /* Do task now, or on a later tick if shedding or there is queued
+     * work ahead of it.
+     */
+    public void run(Work kind, Runnable task) {
+        if (tickTask == null || (deferred.isEmpty() && !isShedding())) {
+            task.run();
+            return;
+        }
+        deferred.addLast(new Deferred(kind, task, ticks));
+        shed.incrementAndGet(kind.ordinal());
+    }
+
+    /* For work that is done a slice per tick anyway: true (and
+     * counted) if this tick's slice should be skipped.
+     */
+    public boolean skip(Work kind) {
+        if (!isShedding()) {
+            return false;
+        }
+        shed.incrementAndGet(kind.ordinal());
+        return true;
+    }
+
+    /* Forget queued work of one kind, e.g. when the game it was for
+     * is over.
+     */
+    public void drop(Work kind) {
+        Iterator<Deferred> it = deferred.iterator();
+        while (it.hasNext()) {
+            if (it.next().kind == kind) {
+                it.remove();
+            }
+        }
+    }
+
+    public double getTps() {
+        return tps;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getTicksOverBudget() {
+        return ticksOverBudget;
+    }
+
+    public long getTicksLowTps() {
+        return ticksLowTps;
+    }
+
+    /* How many times work of this kind was put off. */
+    public long getShedCount(Work kind) {
+        return shed.get(kind.ordinal());
+    }
+
+    public void clear() {
+        ticks = 0;
+        ticksOverBudget = 0;
+        ticksLowTps = 0;
+        for (int i = 0; i < shed.length(); i++) {
+            shed.set(i, 0);
+        }
+    }
+
+    /* One line per item, ready for chat or a file.
+     */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<String>();
+        lines.add(String.format("Tick budget: TPS %.1f; over budget %d and under %.1f TPS %d of %d ticks",
+                                tps, ticksOverBudget, minTps, ticksLowTps, ticks));
+        lines.add("Put off: " + getShedCount(Work.MESSAGE) + " spectator messages, "
+            + getShedCount(Work.HUD) + " scoreboard updates, "
+            + getShedCount(Work.BLOCKS) + " block changes");
+        return lines;
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        if (lastTick != 0) {
+            int i = intervalCount % TPS_WINDOW;
+            long d = now - lastTick;
+            intervalSum += d - intervals[i];
+            intervals[i] = d;
+            intervalCount += 1;
+            int n = Math.min(intervalCount, TPS_WINDOW);
+            tps = Math.min(20.0, n * 1e9 / Math.max(1, intervalSum));
+        }
+        lastTick = now;
+        ticks += 1;
+        if (budgetNanos > 0 && spent >= budgetNanos) {
+            ticksOverBudget += 1;
+        }
+        if (minTps > 0 && tps < minTps) {
+            ticksLowTps += 1;
+        }
+        spent = 0;
+        while (!deferred.isEmpty()
+               && (!isShedding() || ticks - deferred.getFirst().tick >= MAX_DEFER_TICKS)) {
+            Deferred d = deferred.removeFirst();
+            long began = begin();
+            d.task.run();
+            end(began);
+        }
+    }
+
+}
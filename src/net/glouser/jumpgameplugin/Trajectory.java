@@ -0,0 +1,172 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin;
+
+import java.util.Arrays;
+import org.bukkit.Location;
+
+/* A jumper's path, one sample per tick at most.
+ *
+ * Each sample is the change from the previous one in ticks, position
+ * (1/32 block, like the network protocol) and yaw/pitch (1/4 degree),
+ * written as zigzag varints. Between ticks a player moves well under a
+ * block, so most samples take 6-8 bytes. The first sample is the change
+ * from zero, i.e. absolute.
+ *
+ * The buffer is reused from turn to turn and only grows if a turn runs
+ * long.
+ */
+public class Trajectory {
+
+    private static int POS_SCALE = 32;
+    private static int ANGLE_SCALE = 4;
+    private static long MILLIS_PER_TICK = 50;
+
+    private byte[] buf;
+    private int len;
+    private int samples;
+    private long startMillis;
+    private int lastTick;
+    private int lastX;
+    private int lastY;
+    private int lastZ;
+    private int lastYaw;
+    private int lastPitch;
+
+    public Trajectory(int capacity) {
+        buf = new byte[capacity];
+    }
+
+    public void start(long millis) {
+        startMillis = millis;
+        len = 0;
+        samples = 0;
+        lastTick = 0;
+        lastX = lastY = lastZ = 0;
+        lastYaw = lastPitch = 0;
+    }
+
+    public void add(long millis, Location l) {
+        int tick = (int) ((millis - startMillis) / MILLIS_PER_TICK);
+        if (samples > 0 && tick <= lastTick) {
+            // Already have this tick.
+            return;
+        }
+        int x = (int) Math.round(l.getX() * POS_SCALE);
+        int y = (int) Math.round(l.getY() * POS_SCALE);
+        int z = (int) Math.round(l.getZ() * POS_SCALE);
+        int yaw = Math.round(l.getYaw() * ANGLE_SCALE);
+        int pitch = Math.round(l.getPitch() * ANGLE_SCALE);
+        if (buf.length - len < 30) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        putVarint(tick - lastTick);
+        putVarint(zigzag(x - lastX));
+        putVarint(zigzag(y - lastY));
+        putVarint(zigzag(z - lastZ));
+        putVarint(zigzag(yaw - lastYaw));
+        putVarint(zigzag(pitch - lastPitch));
+        lastTick = tick;
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        lastYaw = yaw;
+        lastPitch = pitch;
+        samples += 1;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /* Duration in ticks from the first sample to the last. */
+    public int getTicks() {
+        return lastTick;
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    private void putVarint(int v) {
+        while ((v & ~0x7f) != 0) {
+            buf[len++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        buf[len++] = (byte) v;
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    /* Walks through encoded samples, undoing the deltas.
+     */
+    public static class Reader {
+        private byte[] data;
+        private int pos;
+        private int tick;
+        private int x;
+        private int y;
+        private int z;
+        private int yaw;
+        private int pitch;
+
+        public Reader(byte[] data) {
+            this.data = data;
+        }
+
+        public boolean next() {
+            if (pos >= data.length) {
+                return false;
+            }
+            tick += getVarint();
+            x += unzigzag(getVarint());
+            y += unzigzag(getVarint());
+            z += unzigzag(getVarint());
+            yaw += unzigzag(getVarint());
+            pitch += unzigzag(getVarint());
+            return true;
+        }
+
+        public int getTick() { return tick; }
+        public double getX() { return (double) x / POS_SCALE; }
+        public double getY() { return (double) y / POS_SCALE; }
+        public double getZ() { return (double) z / POS_SCALE; }
+        public float getYaw() { return (float) yaw / ANGLE_SCALE; }
+        public float getPitch() { return (float) pitch / ANGLE_SCALE; }
+
+        private int getVarint() {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                v |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+
+        private static int unzigzag(int v) {
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
 package net.glouser.jumpgameplugin;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -48,7 +49,8 @@ public class TurnTracker {
     public enum AddResult {
         SUCCESS,
         FAILED_IN_PROGRESS,
-        FAILED_ALREADY_PLAYING
+        FAILED_ALREADY_PLAYING,
+        FAILED_FULL
     }
 
     public enum RemoveResult {
@@ -64,18 +66,27 @@ public class TurnTracker {
         RemoveResult.SUCCESS_NEW_STATE);
 
     private Plugin plugin;
+    private GameTracer tracer;
     private Random rand;
+    private boolean preShuffled;
     private Mode mode;
     private State state;
     private ArrayList<Player> allPlayers;
     private LinkedList<Player> nextPlayers;
     private ArrayList<Player> prevPlayers;
     private ArrayList<Player> provisionalOut;
+    private ArrayList<Player> eliminated;
     private Player currentPlayer;
     private int roundNum;
 
-    public TurnTracker(Plugin plugin) {
+    // What the tracer was last told.
+    private State tracedState;
+    private Mode tracedMode;
+    private Player tracedPlayer;
+
+    public TurnTracker(Plugin plugin, GameTracer tracer) {
         this.plugin = plugin;
+        this.tracer = tracer;
         rand = new Random();
         mode = Mode.CONTINUOUS;
         state = State.STOPPED;
@@ -83,6 +94,9 @@ public class TurnTracker {
         nextPlayers = new LinkedList<Player>();
         prevPlayers = new ArrayList<Player>();
         provisionalOut = new ArrayList<Player>();
+        eliminated = new ArrayList<Player>();
+        tracedState = state;
+        tracedMode = mode;
     }
 
     public void reset() {
@@ -92,8 +106,11 @@ public class TurnTracker {
         nextPlayers.clear();
         prevPlayers.clear();
         provisionalOut.clear();
+        eliminated.clear();
         currentPlayer = null;
         roundNum = 0;
+        preShuffled = false;
+        trace();
     }
 
     public Mode getMode() {
@@ -102,6 +119,7 @@ public class TurnTracker {
 
     public void setMode(Mode m) {
         mode = m;
+        trace();
     }
 
     public State getState() {
@@ -132,6 +150,12 @@ public class TurnTracker {
         return provisionalOut;
     }
 
+    /* Players knocked out for good since the list was last cleared.
+     */
+    public List<Player> getEliminated() {
+        return eliminated;
+    }
+
     public int numActivePlayers() {
         switch (mode) {
             case CONTINUOUS:
@@ -148,10 +172,22 @@ public class TurnTracker {
         } else if (isPlaying(p)) {
             return AddResult.FAILED_ALREADY_PLAYING;
         }
-        allPlayers.add(p);
+        if (preShuffled) {
+            // Keep the order random for late joiners too.
+            allPlayers.add(rand.nextInt(allPlayers.size() + 1), p);
+        } else {
+            allPlayers.add(p);
+        }
         return AddResult.SUCCESS;
     }
 
+    /* Decide the jumping order now rather than at start().
+     */
+    public void shuffle() {
+        Collections.shuffle(allPlayers, rand);
+        preShuffled = true;
+    }
+
     public RemoveResult removePlayer(Player p) {
         if (!isPlaying(p)) {
             return RemoveResult.FAILED_NOT_FOUND;
@@ -179,18 +215,25 @@ public class TurnTracker {
                 result = RemoveResult.SUCCESS_NEW_STATE;
             }
         }
+        trace();
         return result;
     }
 
     public void start() {
         if (state != State.STOPPED) { return; }
-        for (int i = 0; i < allPlayers.size(); i++) {
-            int pos = rand.nextInt(i+1);
-            nextPlayers.add(pos, allPlayers.get(i));
+        if (preShuffled) {
+            nextPlayers.addAll(allPlayers);
+            preShuffled = false;
+        } else {
+            for (int i = 0; i < allPlayers.size(); i++) {
+                int pos = rand.nextInt(i+1);
+                nextPlayers.add(pos, allPlayers.get(i));
+            }
         }
         currentPlayer = nextPlayers.remove();
         state = (nextPlayers.size() == 0) ? State.SP_READY : State.READY;
         roundNum = 1;
+        trace();
     }
 
     public void endTurnSuccess() {
@@ -207,7 +250,7 @@ public class TurnTracker {
                 switch (mode) {
                     case CONTINUOUS:
                         nextPlayers.add(currentPlayer);
-                        provisionalOut.clear();
+                        eliminateProvisional();
                         continuousNextPlayer();
                         break;
 
@@ -226,13 +269,16 @@ public class TurnTracker {
 
             case GAME_POINT:
                 // Current player wins
+                eliminateProvisional();
                 state = State.WINNER;
                 break;
 
             default:
                 plugin.getLogger().info("unexpected state in TurnTracker.endTurnSuccess: " + state);
+                tracer.unexpected(state, "TurnTracker.endTurnSuccess");
                 break;
         }
+        trace();
     }
 
     public void endTurnFailure() {
@@ -269,9 +315,29 @@ public class TurnTracker {
                 break;
 
             default:
-                plugin.getLogger().info("unexpected state in TurnTracker.endTurnSuccess: " + state);
+                plugin.getLogger().info("unexpected state in TurnTracker.endTurnFailure: " + state);
+                tracer.unexpected(state, "TurnTracker.endTurnFailure");
                 break;
         }
+        trace();
+    }
+
+    /* Tell the tracer about any change since it was last told.
+     */
+    private void trace() {
+        if (state != tracedState) {
+            tracer.record(GameTracer.Kind.TURN_STATE, tracedState, state, null);
+            tracedState = state;
+        }
+        if (mode != tracedMode) {
+            tracer.record(GameTracer.Kind.TURN_MODE, tracedMode, mode, null);
+            tracedMode = mode;
+        }
+        if (currentPlayer != tracedPlayer) {
+            tracer.record(GameTracer.Kind.CURRENT_PLAYER, null, null,
+                          (currentPlayer == null) ? null : currentPlayer.getName());
+            tracedPlayer = currentPlayer;
+        }
     }
 
     private void continuousNextPlayer() {
@@ -312,12 +378,12 @@ public class TurnTracker {
             if (prevPlayers.size() == 1) {
                 currentPlayer = prevPlayers.get(0);
                 prevPlayers.clear();
-                provisionalOut.clear();
+                eliminateProvisional();
                 state = State.WINNER;
             } else {
                 nextPlayers.addAll(prevPlayers);
                 prevPlayers.clear();
-                provisionalOut.clear();
+                eliminateProvisional();
                 currentPlayer = nextPlayers.remove();
                 state = State.NEW_ROUND;
                 roundNum += 1;
@@ -341,6 +407,11 @@ public class TurnTracker {
         }
     }
 
+    private void eliminateProvisional() {
+        eliminated.addAll(provisionalOut);
+        provisionalOut.clear();
+    }
+
     private boolean removalStateFixup() {
         boolean changed = false;
         switch (mode) {
@@ -0,0 +1,52 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin.event;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/* Called when the pool is down to its last water block and play
+ * switches to rounds.
+ */
+public class JumpRoundsModeEvent extends Event {
+
+    private static final HandlerList handlers = new HandlerList();
+
+    private int contenders;
+
+    public JumpRoundsModeEvent(int contenders) {
+        this.contenders = contenders;
+    }
+
+    /* Number of contenders when rounds begin.
+     */
+    public int getContenders() {
+        return contenders;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+
+}
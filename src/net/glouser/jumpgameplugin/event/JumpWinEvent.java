@@ -0,0 +1,58 @@
+/***********************************************************************
+ * Jump Game - mini-game plugin for Bukkit
+ * Copyright (C) 2013 Grant Glouser
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ***********************************************************************/
+
+package net.glouser.jumpgameplugin.event;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/* Called when a jump game has a winner.
+ */
+public class JumpWinEvent extends Event {
+
+    private static final HandlerList handlers = new HandlerList();
+
+    private Player winner;
+    private int jumpCount;
+
+    public JumpWinEvent(Player winner, int jumpCount) {
+        this.winner = winner;
+        this.jumpCount = jumpCount;
+    }
+
+    public Player getWinner() {
+        return winner;
+    }
+
+    /* Number of successful jumps in the game.
+     */
+    public int getJumpCount() {
+        return jumpCount;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+
+}